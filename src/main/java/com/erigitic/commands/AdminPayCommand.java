@@ -26,6 +26,8 @@
 package com.erigitic.commands;
 
 import com.erigitic.config.AccountManager;
+import com.erigitic.config.EconomyStats;
+import com.erigitic.config.IncomeSource;
 import com.erigitic.config.TEAccount;
 import com.erigitic.main.TotalEconomy;
 import org.slf4j.Logger;
@@ -38,12 +40,14 @@ import org.spongepowered.api.entity.living.player.Player;
 import org.spongepowered.api.event.cause.Cause;
 import org.spongepowered.api.event.cause.NamedCause;
 import org.spongepowered.api.service.economy.Currency;
+import org.spongepowered.api.service.economy.account.UniqueAccount;
 import org.spongepowered.api.service.economy.transaction.ResultType;
 import org.spongepowered.api.service.economy.transaction.TransactionResult;
 import org.spongepowered.api.text.Text;
 import org.spongepowered.api.text.format.TextColors;
 
 import java.math.BigDecimal;
+import java.util.Optional;
 
 public class AdminPayCommand implements CommandExecutor {
     private Logger logger;
@@ -68,9 +72,18 @@ public class AdminPayCommand implements CommandExecutor {
         if (TotalEconomy.isNumeric(strAmount)) {
             if (!strAmount.contains("-")) {
                 BigDecimal amount = new BigDecimal((String) args.getOne("amount").get()).setScale(2, BigDecimal.ROUND_DOWN);
-                TEAccount recipientAccount = (TEAccount) accountManager.getOrCreateAccount(recipient.getUniqueId()).get();
+                Optional<UniqueAccount> recipientAccountOpt = accountManager.getOrCreateAccount(recipient.getUniqueId());
 
-                TransactionResult transactionResult = recipientAccount.deposit(accountManager.getDefaultCurrency(), amount, Cause.of(NamedCause.of("TotalEconomy", totalEconomy.getPluginContainer())));
+                // Accounts are read from the storage if they aren't resident, which can fail
+                if (!recipientAccountOpt.isPresent()) {
+                    src.sendMessage(Text.of(TextColors.RED, "Could not load the account of ", recipient.getName(), "."));
+
+                    return CommandResult.empty();
+                }
+
+                TEAccount recipientAccount = (TEAccount) recipientAccountOpt.get();
+
+                TransactionResult transactionResult = recipientAccount.deposit(accountManager.getDefaultCurrency(), amount, Cause.of(NamedCause.of("TotalEconomy", totalEconomy.getPluginContainer()), NamedCause.of(EconomyStats.SOURCE, IncomeSource.ADMIN)));
 
                 if (transactionResult.getResult() == ResultType.SUCCESS) {
                     src.sendMessage(Text.of(TextColors.GRAY, "You have sent ", TextColors.GOLD, defaultCurrency.format(amount),
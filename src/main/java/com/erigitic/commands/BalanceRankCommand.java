@@ -0,0 +1,82 @@
+/*
+ * This file is part of Total Economy, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Eric Grandt <https://www.ericgrandt.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.erigitic.commands;
+
+import com.erigitic.config.AccountManager;
+import com.erigitic.config.Leaderboard;
+import com.erigitic.main.TotalEconomy;
+import org.spongepowered.api.command.CommandException;
+import org.spongepowered.api.command.CommandResult;
+import org.spongepowered.api.command.CommandSource;
+import org.spongepowered.api.command.args.CommandContext;
+import org.spongepowered.api.command.spec.CommandExecutor;
+import org.spongepowered.api.entity.living.player.Player;
+import org.spongepowered.api.entity.living.player.User;
+import org.spongepowered.api.text.Text;
+import org.spongepowered.api.text.format.TextColors;
+
+import java.util.Optional;
+
+public class BalanceRankCommand implements CommandExecutor {
+    private TotalEconomy totalEconomy;
+    private AccountManager accountManager;
+
+    public BalanceRankCommand(TotalEconomy totalEconomy) {
+        this.totalEconomy = totalEconomy;
+
+        accountManager = totalEconomy.getAccountManager();
+    }
+
+    @Override
+    public CommandResult execute(CommandSource sender, CommandContext args) throws CommandException {
+        Optional<User> userOpt = args.getOne("player");
+
+        if (!userOpt.isPresent() && sender instanceof Player) {
+            userOpt = Optional.of((Player) sender);
+        }
+
+        if (!userOpt.isPresent()) {
+            sender.sendMessage(Text.of(TextColors.RED, "A player must be specified."));
+
+            return CommandResult.empty();
+        }
+
+        User user = userOpt.get();
+        Leaderboard leaderboard = accountManager.getLeaderboard();
+        int rank = leaderboard.getRank(user.getUniqueId().toString());
+
+        if (rank == 0) {
+            sender.sendMessage(Text.of(TextColors.RED, user.getName(), " does not have an account."));
+
+            return CommandResult.empty();
+        }
+
+        sender.sendMessage(Text.of(TextColors.GRAY, user.getName(), " is ranked ", TextColors.GOLD, "#", rank,
+                TextColors.GRAY, " of ", leaderboard.size(), " by balance."));
+
+        return CommandResult.success();
+    }
+}
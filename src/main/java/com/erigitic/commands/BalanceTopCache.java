@@ -0,0 +1,210 @@
+/*
+ * This file is part of Total Economy, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Eric Grandt <https://www.ericgrandt.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.erigitic.commands;
+
+import com.erigitic.config.AccountManager;
+import com.erigitic.config.AccountRecord;
+import com.erigitic.config.Leaderboard;
+import com.erigitic.config.PlayerNameCache;
+import com.erigitic.main.TotalEconomy;
+import org.slf4j.Logger;
+import org.spongepowered.api.Sponge;
+import org.spongepowered.api.scheduler.Task;
+import org.spongepowered.api.service.economy.Currency;
+import org.spongepowered.api.service.pagination.PaginationList;
+import org.spongepowered.api.service.pagination.PaginationService;
+import org.spongepowered.api.text.Text;
+import org.spongepowered.api.text.format.TextColors;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Rendered rows of the balance top, rebuilt off the server thread once the refresh interval has passed or enough
+ * balances have changed. Commands are always answered from the last finished build, so spamming /baltop costs nothing
+ * but sending the pages.
+ */
+public class BalanceTopCache {
+    // How long to wait before rebuilding once the names that were missing from a build have been looked up
+    private static final long NAME_RETRY_MILLIS = 2000;
+
+    private TotalEconomy totalEconomy;
+    private AccountManager accountManager;
+    private Logger logger;
+
+    private PaginationService paginationService = Sponge.getServiceManager().provideUnchecked(PaginationService.class);
+
+    private int rowCount;
+    private int defaultCount;
+    private long refreshMillis;
+    private long refreshChanges;
+
+    private Task task;
+    private AtomicBoolean rebuilding = new AtomicBoolean(false);
+
+    private volatile List<Text> rows;
+    private volatile PaginationList defaultPages;
+    private volatile long builtVersion;
+    private volatile long builtMillis;
+    private volatile boolean namesMissing;
+    private volatile boolean namesRetried;
+
+    /**
+     * @param totalEconomy the plugin instance
+     * @param rowCount amount of rows to render, the most that can be requested
+     * @param defaultCount amount of rows shown when no count is requested
+     */
+    public BalanceTopCache(TotalEconomy totalEconomy, int rowCount, int defaultCount) {
+        this.totalEconomy = totalEconomy;
+        this.rowCount = rowCount;
+        this.defaultCount = defaultCount;
+
+        accountManager = totalEconomy.getAccountManager();
+        logger = totalEconomy.getLogger();
+
+        refreshMillis = TimeUnit.SECONDS.toMillis(totalEconomy.getBalanceTopRefreshInterval());
+        refreshChanges = totalEconomy.getBalanceTopRefreshChanges();
+    }
+
+    /**
+     * Start checking for changes in the background. The first build starts right away. Should be called once the
+     * server has started.
+     */
+    public void start() {
+        task = totalEconomy.getGame().getScheduler().createTaskBuilder()
+                .execute(() -> {
+                    // Player names can't be looked up until the user storage service is available
+                    if (totalEconomy.getUserStorageService().isPresent() && isStale() && rebuilding.compareAndSet(false, true)) {
+                        try {
+                            rebuild();
+                        } catch (RuntimeException e) {
+                            logger.warn("Could not build the balance top!", e);
+                        } finally {
+                            rebuilding.set(false);
+                        }
+                    }
+                })
+                .async()
+                .interval(1, TimeUnit.SECONDS)
+                .name("Total Economy - Balance Top Builder")
+                .submit(totalEconomy);
+    }
+
+    /**
+     * Stop checking for changes
+     */
+    public void stop() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+    }
+
+    /**
+     * Get the pages of the balance top
+     *
+     * @param count amount of rows to show
+     * @return PaginationList the pages, or null if the first build has not finished yet
+     */
+    public PaginationList getPages(int count) {
+        List<Text> currentRows = rows;
+
+        if (currentRows == null) {
+            return null;
+        }
+
+        if (count == defaultCount) {
+            return defaultPages;
+        }
+
+        return buildPages(currentRows.subList(0, Math.min(count, currentRows.size())));
+    }
+
+    private boolean isStale() {
+        if (rows == null) {
+            return true;
+        }
+
+        long sinceBuild = System.currentTimeMillis() - builtMillis;
+
+        // Rebuild once more soon after a build that had to show identifiers, the names should be cached by then
+        if (namesMissing && !namesRetried && sinceBuild >= NAME_RETRY_MILLIS) {
+            return true;
+        }
+
+        long changes = accountManager.getLeaderboard().getVersion() - builtVersion;
+
+        if (changes == 0 && !namesMissing) {
+            return false;
+        }
+
+        return changes >= refreshChanges || sinceBuild >= refreshMillis;
+    }
+
+    private void rebuild() {
+        Leaderboard leaderboard = accountManager.getLeaderboard();
+        PlayerNameCache nameCache = accountManager.getNameCache();
+        Currency defaultCurrency = accountManager.getDefaultCurrency();
+
+        // Read before the range so changes made while building trigger the next rebuild
+        long version = leaderboard.getVersion();
+        List<Text> newRows = new ArrayList<>(rowCount);
+        boolean missing = false;
+
+        for (Leaderboard.Entry entry : leaderboard.getRange(0, rowCount)) {
+            // Only the cache is read here, names that aren't cached are looked up in the background for the next build
+            Optional<String> cachedName = nameCache.getIfPresent(UUID.fromString(entry.getIdentifier()));
+            missing |= !cachedName.isPresent();
+
+            Text playerName = Text.of(cachedName.orElse(entry.getIdentifier()));
+            Text playerBalance = defaultCurrency.format(AccountRecord.fromMinorUnits(entry.getScore()));
+
+            newRows.add(Text.of(TextColors.GRAY, entry.getRank(), ". ", playerName.toPlain(), ": ", TextColors.GOLD, playerBalance.toPlain()));
+        }
+
+        newRows = Collections.unmodifiableList(newRows);
+
+        defaultPages = buildPages(newRows.subList(0, Math.min(defaultCount, newRows.size())));
+        rows = newRows;
+        builtVersion = version;
+        builtMillis = System.currentTimeMillis();
+        namesRetried = namesMissing;
+        namesMissing = missing;
+    }
+
+    private PaginationList buildPages(List<Text> contents) {
+        return paginationService.builder()
+                .title(Text.of(TextColors.GOLD, "Top Balances"))
+                .contents(contents)
+                .padding(Text.of(TextColors.GRAY, "-"))
+                .build();
+    }
+}
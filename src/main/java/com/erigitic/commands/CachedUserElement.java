@@ -0,0 +1,95 @@
+/*
+ * This file is part of Total Economy, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Eric Grandt <https://www.ericgrandt.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.erigitic.commands;
+
+import com.erigitic.config.PlayerNameCache;
+import com.erigitic.main.TotalEconomy;
+import org.spongepowered.api.command.CommandSource;
+import org.spongepowered.api.command.args.ArgumentParseException;
+import org.spongepowered.api.command.args.CommandArgs;
+import org.spongepowered.api.command.args.CommandContext;
+import org.spongepowered.api.command.args.CommandElement;
+import org.spongepowered.api.entity.living.player.Player;
+import org.spongepowered.api.entity.living.player.User;
+import org.spongepowered.api.service.user.UserStorageService;
+import org.spongepowered.api.text.Text;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Command argument for a player that may be offline. Names are resolved through online players and the name cache
+ * before falling back to the user storage, and tab completion suggests cached names as well as online players.
+ */
+public class CachedUserElement extends CommandElement {
+    private TotalEconomy totalEconomy;
+    private PlayerNameCache nameCache;
+
+    public CachedUserElement(TotalEconomy totalEconomy, Text key) {
+        super(key);
+
+        this.totalEconomy = totalEconomy;
+
+        nameCache = totalEconomy.getAccountManager().getNameCache();
+    }
+
+    @Override
+    protected Object parseValue(CommandSource source, CommandArgs args) throws ArgumentParseException {
+        String name = args.next();
+        Optional<Player> player = totalEconomy.getServer().getPlayer(name);
+
+        if (player.isPresent()) {
+            return player.get();
+        }
+
+        Optional<UserStorageService> userStorageService = totalEconomy.getUserStorageService();
+
+        if (userStorageService.isPresent()) {
+            Optional<UUID> uuid = nameCache.getUniqueId(name);
+            Optional<User> user = uuid.isPresent() ? userStorageService.get().get(uuid.get()) : userStorageService.get().get(name);
+
+            if (user.isPresent()) {
+                return user.get();
+            }
+        }
+
+        throw args.createError(Text.of("Could not find a player named ", name, "."));
+    }
+
+    @Override
+    public List<String> complete(CommandSource src, CommandArgs args, CommandContext context) {
+        String prefix = args.nextIfPresent().orElse("").toLowerCase();
+
+        return Stream.concat(totalEconomy.getServer().getOnlinePlayers().stream().map(Player::getName), nameCache.getNames().stream())
+                .filter(name -> name.toLowerCase().startsWith(prefix))
+                .distinct()
+                .sorted(String.CASE_INSENSITIVE_ORDER)
+                .collect(Collectors.toList());
+    }
+}
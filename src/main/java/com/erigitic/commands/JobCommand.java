@@ -58,6 +58,12 @@ public class JobCommand implements CommandExecutor {
             } else {
                 String jobName = teJobs.getPlayerJob(sender);
 
+                if (jobName == null) {
+                    sender.sendMessage(Text.of(TextColors.RED, "Could not load your account."));
+
+                    return CommandResult.empty();
+                }
+
                 sender.sendMessage(Text.of(TextColors.GRAY, "Your current job is: ", TextColors.GOLD, jobName));
                 sender.sendMessage(Text.of(TextColors.GRAY, jobName, " Level: ", TextColors.GOLD, teJobs.getJobLevel(jobName, sender)));
                 sender.sendMessage(Text.of(TextColors.GRAY, jobName, " Exp: ", TextColors.GOLD, teJobs.getJobExp(jobName, sender), "/", teJobs.getExpToLevel(sender), "\n"));
@@ -26,9 +26,11 @@
 package com.erigitic.commands;
 
 import com.erigitic.config.AccountManager;
+import com.erigitic.jobs.Job;
+import com.erigitic.jobs.JobAction;
+import com.erigitic.jobs.JobReward;
 import com.erigitic.jobs.TEJobs;
 import com.erigitic.main.TotalEconomy;
-import ninja.leaping.configurate.ConfigurationNode;
 import org.apache.commons.lang3.text.WordUtils;
 import org.spongepowered.api.Sponge;
 import org.spongepowered.api.command.CommandException;
@@ -45,13 +47,13 @@ import org.spongepowered.api.text.format.TextStyles;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 
 public class JobInfoCommand implements CommandExecutor {
     private TEJobs teJobs;
     private AccountManager accountManager;
 
-    private ConfigurationNode jobsConfig;
-
     // Setup pagination
     private PaginationService paginationService = Sponge.getServiceManager().provideUnchecked(PaginationService.class);
     private PaginationList.Builder builder = paginationService.builder();
@@ -59,28 +61,20 @@ public class JobInfoCommand implements CommandExecutor {
     public JobInfoCommand(TotalEconomy totalEconomy) {
         teJobs = totalEconomy.getTEJobs();
         accountManager = totalEconomy.getAccountManager();
-
-        jobsConfig = teJobs.getJobsConfig();
     }
 
     @Override
     public CommandResult execute(CommandSource src, CommandContext args) throws CommandException {
         if (src instanceof Player) {
             Player sender = ((Player) src).getPlayer().get();
-            String jobName = teJobs.getPlayerJob(sender);
+            Optional<Job> job = teJobs.getJob(teJobs.getPlayerJob(sender));
             List<Text> jobValues = new ArrayList<>();
 
-            // TODO: There is probably a much better way of doing this.
-            boolean hasBreakNode = (jobsConfig.getNode(jobName, "break").getValue() != null);
-            boolean hasPlaceNode = (jobsConfig.getNode(jobName, "place").getValue() != null);
-            boolean hasCatchNode = (jobsConfig.getNode(jobName, "catch").getValue() != null);
-            boolean hasKillNode = (jobsConfig.getNode(jobName, "kill").getValue() != null);
-
-            // TODO: Same with this, probably a much better way of doing this.
-            if (hasBreakNode) { jobValues.addAll(getJobValues(jobName, "break", "Breakables")); }
-            if (hasPlaceNode) { jobValues.addAll(getJobValues(jobName, "place", "Placeables")); }
-            if (hasCatchNode) { jobValues.addAll(getJobValues(jobName, "catch", "Catchables")); }
-            if (hasKillNode) { jobValues.addAll(getJobValues(jobName, "kill", "Killables")); }
+            if (job.isPresent()) {
+                for (JobAction action : job.get().getActions()) {
+                    jobValues.addAll(getJobValues(job.get(), action));
+                }
+            }
 
             printNodeChildren(sender, jobValues);
         }
@@ -91,25 +85,24 @@ public class JobInfoCommand implements CommandExecutor {
     /**
      * Gets a list of items that reward the player for doing a certain job
      *
-     * @param jobName players current job
-     * @param nodeName node type (break, catch, etc.)
-     * @param title
+     * @param job players current job
+     * @param action the action (break, catch, etc.)
      * @return List<Text> formatted text containing job values
      */
-    private List<Text> getJobValues(String jobName, String nodeName, String title) {
+    private List<Text> getJobValues(Job job, JobAction action) {
         List<Text> jobValues = new ArrayList<>();
+        String nodeName = action.getNodeName();
 
-        jobsConfig.getNode(jobName, nodeName).getChildrenMap().keySet().forEach(value -> {
-            if (value instanceof String) {
-                String valueFormatted = WordUtils.capitalize(((String) value).replaceAll("_", " "));
-                String expReward = jobsConfig.getNode(jobName, nodeName, value, "expreward").getString();
-                String moneyReward = jobsConfig.getNode(jobName, nodeName, value, "pay").getString();
+        for (Map.Entry<String, JobReward> entry : job.getRewards(action).entrySet()) {
+            // Block ids are shown without their namespace
+            String value = entry.getKey().substring(entry.getKey().indexOf(':') + 1);
+            String valueFormatted = WordUtils.capitalize(value.replaceAll("_", " "));
+            JobReward reward = entry.getValue();
 
-                jobValues.add(Text.of(TextColors.LIGHT_PURPLE, WordUtils.capitalize(nodeName + ": "), TextColors.GRAY,
-                        valueFormatted, " | ", TextColors.GREEN, expReward, " exp", TextColors.GRAY, " | ", TextColors.GOLD,
-                        accountManager.getDefaultCurrency().getSymbol(), moneyReward));
-            }
-        });
+            jobValues.add(Text.of(TextColors.LIGHT_PURPLE, WordUtils.capitalize(nodeName + ": "), TextColors.GRAY,
+                    valueFormatted, " | ", TextColors.GREEN, reward.getExp(), " exp", TextColors.GRAY, " | ", TextColors.GOLD,
+                    accountManager.getDefaultCurrency().getSymbol(), reward.getPayAmount()));
+        }
 
         return jobValues;
     }
@@ -26,6 +26,8 @@
 package com.erigitic.commands;
 
 import com.erigitic.config.AccountManager;
+import com.erigitic.config.AccountRecord;
+import com.erigitic.config.NotificationMode;
 import com.erigitic.main.TotalEconomy;
 import org.spongepowered.api.command.CommandException;
 import org.spongepowered.api.command.CommandResult;
@@ -33,6 +35,10 @@ import org.spongepowered.api.command.CommandSource;
 import org.spongepowered.api.command.args.CommandContext;
 import org.spongepowered.api.command.spec.CommandExecutor;
 import org.spongepowered.api.entity.living.player.Player;
+import org.spongepowered.api.text.Text;
+import org.spongepowered.api.text.format.TextColors;
+
+import java.util.Optional;
 
 public class JobToggleCommand implements CommandExecutor {
     private AccountManager accountManager;
@@ -45,8 +51,25 @@ public class JobToggleCommand implements CommandExecutor {
     public CommandResult execute(CommandSource src, CommandContext args) throws CommandException {
         if (src instanceof Player) {
             Player sender = ((Player) src).getPlayer().get();
+            Optional<NotificationMode> mode = args.getOne("mode");
+
+            if (mode.isPresent()) {
+                accountManager.setNotificationMode(sender, mode.get());
+            } else {
+                Optional<AccountRecord> record = accountManager.getOrLoadRecord(sender.getUniqueId());
+
+                if (!record.isPresent()) {
+                    sender.sendMessage(Text.of(TextColors.RED, "Could not load your account."));
+
+                    return CommandResult.empty();
+                }
+
+                // Without a mode the command steps through off, chat and actionbar
+                NotificationMode[] modes = NotificationMode.values();
+                NotificationMode current = record.get().getNotificationMode();
 
-            accountManager.toggleNotifications(sender);
+                accountManager.setNotificationMode(sender, modes[(current.ordinal() + 1) % modes.length]);
+            }
         }
 
         return CommandResult.success();
@@ -0,0 +1,96 @@
+/*
+ * This file is part of Total Economy, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Eric Grandt <https://www.ericgrandt.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.erigitic.commands;
+
+import com.erigitic.config.AccountManager;
+import com.erigitic.config.AccountRecord;
+import com.erigitic.config.Leaderboard;
+import com.erigitic.config.PlayerNameCache;
+import com.erigitic.jobs.Job;
+import com.erigitic.jobs.TEJobs;
+import com.erigitic.main.TotalEconomy;
+import org.spongepowered.api.Sponge;
+import org.spongepowered.api.command.CommandException;
+import org.spongepowered.api.command.CommandResult;
+import org.spongepowered.api.command.CommandSource;
+import org.spongepowered.api.command.args.CommandContext;
+import org.spongepowered.api.command.spec.CommandExecutor;
+import org.spongepowered.api.service.pagination.PaginationService;
+import org.spongepowered.api.text.Text;
+import org.spongepowered.api.text.format.TextColors;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+public class JobTopCommand implements CommandExecutor {
+    private static final int TOP_PLAYER_COUNT = 10;
+    private static final int MAX_PLAYER_COUNT = 100;
+
+    private AccountManager accountManager;
+    private TEJobs teJobs;
+
+    private PaginationService paginationService = Sponge.getServiceManager().provideUnchecked(PaginationService.class);
+
+    public JobTopCommand(TotalEconomy totalEconomy) {
+        accountManager = totalEconomy.getAccountManager();
+        teJobs = totalEconomy.getTEJobs();
+    }
+
+    @Override
+    public CommandResult execute(CommandSource src, CommandContext args) throws CommandException {
+        Optional<Job> job = teJobs.getJob(args.<String>getOne("jobName").get());
+
+        if (!job.isPresent()) {
+            src.sendMessage(Text.of(TextColors.RED, "[TEJobs] This job does not exist"));
+
+            return CommandResult.empty();
+        }
+
+        String jobName = job.get().getName();
+
+        int count = Math.max(1, Math.min(args.<Integer>getOne("count").orElse(TOP_PLAYER_COUNT), MAX_PLAYER_COUNT));
+        PlayerNameCache nameCache = accountManager.getNameCache();
+        List<Text> jobLevels = new ArrayList<>();
+
+        for (Leaderboard.Entry entry : accountManager.getJobLeaderboard(jobName).getRange(0, count)) {
+            AccountRecord.JobStats jobStats = AccountRecord.JobStats.fromScore(entry.getScore());
+            String playerName = nameCache.getIfPresent(UUID.fromString(entry.getIdentifier())).orElse(entry.getIdentifier());
+
+            jobLevels.add(Text.of(TextColors.GRAY, entry.getRank(), ". ", playerName, ": ", TextColors.GOLD, "Level ",
+                    jobStats.getLevel(), TextColors.GRAY, " (", jobStats.getExp(), " exp)"));
+        }
+
+        paginationService.builder()
+                .title(Text.of(TextColors.GOLD, "Top ", jobName, " Levels"))
+                .contents(jobLevels)
+                .padding(Text.of(TextColors.GRAY, "-"))
+                .sendTo(src);
+
+        return CommandResult.success();
+    }
+}
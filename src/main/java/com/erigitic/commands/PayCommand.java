@@ -26,6 +26,8 @@
 package com.erigitic.commands;
 
 import com.erigitic.config.AccountManager;
+import com.erigitic.config.EconomyStats;
+import com.erigitic.config.IncomeSource;
 import com.erigitic.config.TEAccount;
 import com.erigitic.main.TotalEconomy;
 import org.slf4j.Logger;
@@ -40,6 +42,7 @@ import org.spongepowered.api.entity.living.player.Player;
 import org.spongepowered.api.event.cause.Cause;
 import org.spongepowered.api.event.cause.NamedCause;
 import org.spongepowered.api.service.economy.Currency;
+import org.spongepowered.api.service.economy.account.UniqueAccount;
 import org.spongepowered.api.service.economy.transaction.ResultType;
 import org.spongepowered.api.service.economy.transaction.TransactionResult;
 import org.spongepowered.api.service.economy.transaction.TransferResult;
@@ -47,6 +50,7 @@ import org.spongepowered.api.text.Text;
 import org.spongepowered.api.text.format.TextColors;
 
 import java.math.BigDecimal;
+import java.util.Optional;
 
 public class PayCommand implements CommandExecutor {
     private Logger logger;
@@ -78,10 +82,21 @@ public class PayCommand implements CommandExecutor {
                         Player recipient = (Player) playerArg;
                         BigDecimal amount = new BigDecimal((String) args.getOne("amount").get()).setScale(2, BigDecimal.ROUND_DOWN);
 
-                        TEAccount playerAccount = (TEAccount) accountManager.getOrCreateAccount(sender.getUniqueId()).get();
-                        TEAccount recipientAccount = (TEAccount) accountManager.getOrCreateAccount(recipient.getUniqueId()).get();
+                        Optional<UniqueAccount> playerAccountOpt = accountManager.getOrCreateAccount(sender.getUniqueId());
+                        Optional<UniqueAccount> recipientAccountOpt = accountManager.getOrCreateAccount(recipient.getUniqueId());
 
-                        TransferResult transferResult = playerAccount.transfer(recipientAccount, accountManager.getDefaultCurrency(), amount, Cause.of(NamedCause.of("TotalEconomy", totalEconomy.getPluginContainer())));
+                        // Accounts are read from the storage if they aren't resident, which can fail
+                        if (!playerAccountOpt.isPresent() || !recipientAccountOpt.isPresent()) {
+                            sender.sendMessage(Text.of(TextColors.RED, "Could not load the account of ",
+                                    playerAccountOpt.isPresent() ? recipient.getName() : sender.getName(), "."));
+
+                            return CommandResult.empty();
+                        }
+
+                        TEAccount playerAccount = (TEAccount) playerAccountOpt.get();
+                        TEAccount recipientAccount = (TEAccount) recipientAccountOpt.get();
+
+                        TransferResult transferResult = playerAccount.transfer(recipientAccount, accountManager.getDefaultCurrency(), amount, Cause.of(NamedCause.of("TotalEconomy", totalEconomy.getPluginContainer()), NamedCause.of(EconomyStats.SOURCE, IncomeSource.PAY)));
 
                         if (transferResult.getResult() == ResultType.SUCCESS) {
                             sender.sendMessage(Text.of(TextColors.GRAY, "You have sent ", TextColors.GOLD, defaultCurrency.format(amount),
@@ -91,6 +106,8 @@ public class PayCommand implements CommandExecutor {
                                     TextColors.GRAY, " from ", TextColors.GOLD, sender.getName(), "."));
                         } else if (transferResult.getResult() == ResultType.ACCOUNT_NO_FUNDS) {
                             sender.sendMessage(Text.of(TextColors.RED, "Insufficient funds."));
+                        } else if (transferResult.getResult() == ResultType.ACCOUNT_NO_SPACE) {
+                            sender.sendMessage(Text.of(TextColors.RED, recipient.getName(), " can't hold that much money."));
                         }
                     }
                 } else {
@@ -108,9 +125,17 @@ public class PayCommand implements CommandExecutor {
                 BigDecimal amount = new BigDecimal((String) args.getOne("amount").get()).setScale(2, BigDecimal.ROUND_DOWN);
                 Text amountText = Text.of(defaultCurrency.format(amount).toPlain().replace("-", ""));
 
-                TEAccount recipientAccount = (TEAccount) accountManager.getOrCreateAccount(recipient.getUniqueId()).get();
+                Optional<UniqueAccount> recipientAccountOpt = accountManager.getOrCreateAccount(recipient.getUniqueId());
+
+                if (!recipientAccountOpt.isPresent()) {
+                    src.sendMessage(Text.of(TextColors.RED, "Could not load the account of ", recipient.getName(), "."));
+
+                    return CommandResult.empty();
+                }
+
+                TEAccount recipientAccount = (TEAccount) recipientAccountOpt.get();
 
-                TransactionResult transactionResult = recipientAccount.deposit(accountManager.getDefaultCurrency(), amount, Cause.of(NamedCause.of("TotalEconomy", totalEconomy.getPluginContainer())));
+                TransactionResult transactionResult = recipientAccount.deposit(accountManager.getDefaultCurrency(), amount, Cause.of(NamedCause.of("TotalEconomy", totalEconomy.getPluginContainer()), NamedCause.of(EconomyStats.SOURCE, IncomeSource.ADMIN)));
 
                 if (transactionResult.getResult() == ResultType.SUCCESS) {
                     if (!strAmount.contains("-")) {
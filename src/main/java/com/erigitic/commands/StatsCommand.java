@@ -0,0 +1,81 @@
+/*
+ * This file is part of Total Economy, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Eric Grandt <https://www.ericgrandt.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.erigitic.commands;
+
+import com.erigitic.config.AccountManager;
+import com.erigitic.config.AccountSaveQueue;
+import com.erigitic.config.EconomyStats;
+import com.erigitic.config.IncomeSource;
+import com.erigitic.main.TotalEconomy;
+import org.spongepowered.api.command.CommandException;
+import org.spongepowered.api.command.CommandResult;
+import org.spongepowered.api.command.CommandSource;
+import org.spongepowered.api.command.args.CommandContext;
+import org.spongepowered.api.command.spec.CommandExecutor;
+import org.spongepowered.api.service.economy.Currency;
+import org.spongepowered.api.text.Text;
+import org.spongepowered.api.text.format.TextColors;
+
+public class StatsCommand implements CommandExecutor {
+    private AccountManager accountManager;
+
+    public StatsCommand(TotalEconomy totalEconomy) {
+        accountManager = totalEconomy.getAccountManager();
+    }
+
+    @Override
+    public CommandResult execute(CommandSource src, CommandContext args) throws CommandException {
+        EconomyStats stats = accountManager.getStats();
+        AccountSaveQueue saveQueue = accountManager.getSaveQueue();
+        Currency defaultCurrency = accountManager.getDefaultCurrency();
+
+        src.sendMessage(Text.of(TextColors.GOLD, "Economy Statistics"));
+        src.sendMessage(Text.of(TextColors.GRAY, "Money Supply: ", TextColors.GOLD, defaultCurrency.format(stats.getSupply()),
+                TextColors.GRAY, " in ", TextColors.GOLD, stats.getAccountCount(), TextColors.GRAY, " accounts"));
+        src.sendMessage(Text.of(TextColors.GRAY, "Mean: ", TextColors.GOLD, defaultCurrency.format(stats.getMean()),
+                TextColors.GRAY, " Median: ", TextColors.GOLD, defaultCurrency.format(stats.getPercentile(0.5))));
+        src.sendMessage(Text.of(TextColors.GRAY, "90th Percentile: ", TextColors.GOLD, defaultCurrency.format(stats.getPercentile(0.9)),
+                TextColors.GRAY, " 99th Percentile: ", TextColors.GOLD, defaultCurrency.format(stats.getPercentile(0.99))));
+        src.sendMessage(Text.of(TextColors.GRAY, "Gini Coefficient: ", TextColors.GOLD, String.format("%.3f", stats.getGini())));
+
+        src.sendMessage(Text.of(TextColors.GOLD, "Income Since Startup"));
+
+        for (IncomeSource source : IncomeSource.values()) {
+            String sourceName = source.name().charAt(0) + source.name().substring(1).toLowerCase();
+
+            src.sendMessage(Text.of(TextColors.GRAY, sourceName, ": ", TextColors.GOLD, defaultCurrency.format(stats.getIncome(source))));
+        }
+
+        src.sendMessage(Text.of(TextColors.GOLD, "Account Saving"));
+        src.sendMessage(Text.of(TextColors.GRAY, "Waiting: ", TextColors.GOLD, saveQueue.getQueueDepth(), TextColors.GRAY,
+                " (peak ", saveQueue.getPeakQueueDepth(), ")", " Saves: ", TextColors.GOLD, saveQueue.getFlushCount()));
+        src.sendMessage(Text.of(TextColors.GRAY, "Save Time: ", TextColors.GOLD, saveQueue.getLastFlushMillis(), "ms",
+                TextColors.GRAY, " last, ", TextColors.GOLD, saveQueue.getAverageFlushMillis(), "ms", TextColors.GRAY,
+                " average, ", TextColors.GOLD, saveQueue.getMaxFlushMillis(), "ms", TextColors.GRAY, " max"));
+
+        return CommandResult.success();
+    }
+}
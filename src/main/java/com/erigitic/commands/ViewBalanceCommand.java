@@ -36,10 +36,12 @@ import org.spongepowered.api.command.spec.CommandExecutor;
 import org.spongepowered.api.entity.living.player.Player;
 import org.spongepowered.api.entity.living.player.User;
 import org.spongepowered.api.service.economy.Currency;
+import org.spongepowered.api.service.economy.account.UniqueAccount;
 import org.spongepowered.api.text.Text;
 import org.spongepowered.api.text.format.TextColors;
 
 import java.math.BigDecimal;
+import java.util.Optional;
 
 public class ViewBalanceCommand implements CommandExecutor {
     private TotalEconomy totalEconomy;
@@ -55,7 +57,16 @@ public class ViewBalanceCommand implements CommandExecutor {
     public CommandResult execute(CommandSource sender, CommandContext args) throws CommandException {
         User recipient = args.<User>getOne("player").get();
 
-        TEAccount recipientAccount = (TEAccount) accountManager.getOrCreateAccount(recipient.getUniqueId()).get();
+        Optional<UniqueAccount> recipientAccountOpt = accountManager.getOrCreateAccount(recipient.getUniqueId());
+
+        // Offline accounts are read from the storage, which can fail
+        if (!recipientAccountOpt.isPresent()) {
+            sender.sendMessage(Text.of(TextColors.RED, "Could not load the account of ", recipient.getName(), "."));
+
+            return CommandResult.empty();
+        }
+
+        TEAccount recipientAccount = (TEAccount) recipientAccountOpt.get();
 
         Currency defaultCurrency = accountManager.getDefaultCurrency();
         BigDecimal balance = recipientAccount.getBalance(accountManager.getDefaultCurrency());
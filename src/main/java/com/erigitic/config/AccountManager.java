@@ -26,74 +26,348 @@
 package com.erigitic.config;
 
 import com.erigitic.main.TotalEconomy;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import ninja.leaping.configurate.ConfigurationNode;
-import ninja.leaping.configurate.commented.CommentedConfigurationNode;
+import ninja.leaping.configurate.SimpleConfigurationNode;
 import ninja.leaping.configurate.hocon.HoconConfigurationLoader;
-import ninja.leaping.configurate.loader.ConfigurationLoader;
 import org.slf4j.Logger;
 import org.spongepowered.api.entity.living.player.Player;
+import org.spongepowered.api.event.cause.Cause;
+import org.spongepowered.api.scheduler.Task;
+import org.spongepowered.api.service.context.Context;
 import org.spongepowered.api.service.context.ContextCalculator;
 import org.spongepowered.api.service.economy.Currency;
 import org.spongepowered.api.service.economy.EconomyService;
 import org.spongepowered.api.service.economy.account.Account;
 import org.spongepowered.api.service.economy.account.UniqueAccount;
+import org.spongepowered.api.service.economy.transaction.ResultType;
+import org.spongepowered.api.service.economy.transaction.TransactionResult;
+import org.spongepowered.api.service.economy.transaction.TransactionTypes;
+import org.spongepowered.api.service.sql.SqlService;
 import org.spongepowered.api.text.Text;
 import org.spongepowered.api.text.format.TextColors;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.HashSet;
-import java.util.Optional;
-import java.util.Set;
-import java.util.UUID;
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 public class AccountManager implements EconomyService {
+    private static final int ACCOUNT_CACHE_SIZE = 1024;
+
     private TotalEconomy totalEconomy;
     private Logger logger;
     private File accountsFile;
-    private ConfigurationLoader<CommentedConfigurationNode> loader;
-    private ConfigurationNode accountConfig;
+    private AccountStorage storage;
+    private String defaultCurrencyName;
+    private AccountSaveQueue saveQueue;
+    private TransactionJournal journal;
+    private AsyncEconomy asyncEconomy;
+    private PlayerNameCache nameCache;
+
+    // Every player account ordered by balance, kept up to date as balances change
+    private Leaderboard leaderboard = new Leaderboard();
+
+    private EconomyStats stats = new EconomyStats(leaderboard);
+
+    // Player accounts ordered by level and exp, one leaderboard per job
+    private Map<String, Leaderboard> jobLeaderboards = new ConcurrentHashMap<>();
+
+    // Resident accounts keyed by identifier
+    private Map<String, AccountRecord> accounts = new ConcurrentHashMap<>();
+
+    // Identifiers of every account, resident or not
+    private Set<String> knownAccounts = ConcurrentHashMap.newKeySet();
+
+    // Resident accounts without an online player, and when they were last used
+    private Map<String, Long> idleAccounts = new ConcurrentHashMap<>();
+
+    // Accounts read on the login thread, waiting for the player to join
+    private Cache<String, ConfigurationNode> prefetchedAccounts = CacheBuilder.newBuilder()
+            .expireAfterWrite(1, TimeUnit.MINUTES)
+            .build();
+
+    // Account handles handed out by getOrCreateAccount. Handles hold no state of their own, so they can be dropped
+    // and recreated at any time.
+    private Cache<UUID, TEAccount> playerAccounts = CacheBuilder.newBuilder()
+            .maximumSize(ACCOUNT_CACHE_SIZE)
+            .build();
+    private Cache<String, TEVirtualAccount> virtualAccounts = CacheBuilder.newBuilder()
+            .maximumSize(ACCOUNT_CACHE_SIZE)
+            .build();
+
+    private Task evictionTask;
 
     public AccountManager(TotalEconomy totalEconomy) {
+        this(totalEconomy, null);
+    }
+
+    /**
+     * Create an account manager over the passed in storage instead of the one set in the main config. Used by the tests
+     * to run the account manager without a running server.
+     *
+     * @param totalEconomy the plugin instance
+     * @param storage the account storage, or null to create the one set in the main config
+     */
+    AccountManager(TotalEconomy totalEconomy, AccountStorage storage) {
         this.totalEconomy = totalEconomy;
         logger = totalEconomy.getLogger();
+        defaultCurrencyName = getDefaultCurrency().getName().toLowerCase();
 
-        setupConfig();
+        saveQueue = new AccountSaveQueue(totalEconomy, this, totalEconomy.getSaveInterval(), totalEconomy.getSaveThreshold());
+
+        if (storage != null) {
+            accountsFile = new File(totalEconomy.getConfigDir(), "accounts.conf");
+            setupStorage(storage);
+        } else {
+            setupConfig();
+        }
+
+        saveQueue.start();
+
+        asyncEconomy = new AsyncEconomy(totalEconomy, this);
+        nameCache = new PlayerNameCache(totalEconomy, this);
+
+        evictionTask = totalEconomy.getGame().getScheduler().createTaskBuilder()
+                .execute(this::evictIdleAccounts)
+                .interval(30, TimeUnit.SECONDS)
+                .name("Total Economy - Account Eviction")
+                .submit(totalEconomy);
     }
 
     /**
-     * Setup the config file that will contain the user accounts.
+     * Setup the storage that will contain the user accounts. Accounts are not loaded up front, only the identifiers of
+     * the stored accounts are read. The storage type is set in the main config, accounts.conf is imported the first
+     * time a different storage type is used.
      */
     public void setupConfig() {
         accountsFile = new File(totalEconomy.getConfigDir(), "accounts.conf");
-        loader = HoconConfigurationLoader.builder().setFile(accountsFile).build();
+        setupStorage(createStorage(totalEconomy.getStorageType()));
+    }
+
+    /**
+     * Open the account storage, importing accounts.conf if the storage is new, then replay the transaction journal and
+     * fill the leaderboards.
+     *
+     * @param storage the account storage
+     */
+    private void setupStorage(AccountStorage storage) {
+        this.storage = storage;
 
         try {
-            accountConfig = loader.load();
+            knownAccounts.addAll(storage.open());
 
-            if (!accountsFile.exists()) {
-                loader.save(accountConfig);
+            if (!(storage instanceof HoconAccountStorage) && knownAccounts.isEmpty() && accountsFile.exists()) {
+                importAccounts(new HoconAccountStorage(accountsFile, 0));
             }
         } catch (IOException e) {
-            logger.warn("Could not create accounts config file!");
+            logger.error("Could not open the " + totalEconomy.getStorageType() + " account storage!");
         }
+
+        setupJournal();
+        setupLeaderboard();
     }
 
-    @Override
-    public Optional<UniqueAccount> getOrCreateAccount(UUID uuid) {
-        String currencyName = getDefaultCurrency().getDisplayName().toPlain().toLowerCase();
-        TEAccount playerAccount = new TEAccount(totalEconomy, this, uuid);
+    /**
+     * Fill the balance and job leaderboards with every stored player account. Accounts that are in memory are added
+     * with their current values in case the journal recovered changes that could not be saved yet.
+     */
+    private void setupLeaderboard() {
+        Map<String, Long> balances = new HashMap<>();
+
+        try {
+            balances.putAll(storage.getBalances(defaultCurrencyName));
+        } catch (IOException e) {
+            logger.error("Could not read the balances for the balance leaderboard!");
+        }
+
+        accounts.forEach((identifier, record) -> {
+            if (isUniqueIdentifier(identifier)) {
+                balances.put(identifier, record.getBalance());
+            }
+        });
+
+        leaderboard.load(balances);
+
+        Map<String, Map<String, AccountRecord.JobStats>> jobStats = new HashMap<>();
+
+        try {
+            jobStats.putAll(storage.getJobStats());
+        } catch (IOException e) {
+            logger.error("Could not read the job stats for the job leaderboards!");
+        }
+
+        accounts.forEach((identifier, record) -> {
+            if (isUniqueIdentifier(identifier)) {
+                record.getAllJobStats().forEach((jobName, stats) ->
+                        jobStats.computeIfAbsent(jobName, k -> new HashMap<>()).put(identifier, stats));
+            }
+        });
+
+        jobStats.forEach((jobName, stats) -> {
+            Map<String, Long> scores = new HashMap<>();
+
+            stats.forEach((identifier, jobStat) -> scores.put(identifier, jobStat.getScore()));
+            getJobLeaderboard(jobName).load(scores);
+        });
+    }
+
+    /**
+     * Create the account storage for the passed in type, falling back to accounts.conf if the type is unknown or the
+     * storage can't be created.
+     *
+     * @param storageType the storage type from the main config
+     * @return AccountStorage the account storage
+     */
+    private AccountStorage createStorage(String storageType) {
+        if (storageType.equalsIgnoreCase("h2")) {
+            Optional<SqlService> sqlServiceOpt = totalEconomy.getGame().getServiceManager().provide(SqlService.class);
+            String jdbcUrl = totalEconomy.getStorageUrl();
+
+            if (jdbcUrl.isEmpty()) {
+                jdbcUrl = "jdbc:h2:" + new File(totalEconomy.getConfigDir(), "accounts").getAbsolutePath();
+            }
+
+            try {
+                if (sqlServiceOpt.isPresent()) {
+                    return new SqlAccountStorage(sqlServiceOpt.get().getDataSource(jdbcUrl));
+                }
+            } catch (SQLException e) {
+                logger.error("Could not connect to the accounts database!");
+            }
+
+            logger.warn("Falling back to accounts.conf for account storage.");
+        } else if (storageType.equalsIgnoreCase("sharded")) {
+            return new ShardedAccountStorage(new File(totalEconomy.getConfigDir(), "accounts"), totalEconomy.getSaveGenerations());
+        } else if (storageType.equalsIgnoreCase("mapped")) {
+            int jobCount = countConfiguredJobs();
+
+            if (jobCount <= MappedAccountStorage.MAX_JOBS) {
+                return new MappedAccountStorage(new File(totalEconomy.getConfigDir(), "accounts.dat"), getDefaultCurrencyName(), logger);
+            }
+
+            logger.error("jobs.conf has " + jobCount + " jobs, but the mapped account storage can only hold "
+                    + MappedAccountStorage.MAX_JOBS + ". Falling back to accounts.conf for account storage.");
+        } else if (!storageType.equalsIgnoreCase("hocon")) {
+            logger.warn("Unknown storage type " + storageType + ", using accounts.conf.");
+        }
+
+        return new HoconAccountStorage(accountsFile, totalEconomy.getSaveGenerations());
+    }
+
+    /**
+     * Count the jobs in jobs.conf, the sections that aren't settings
+     *
+     * @return int the amount of jobs, or 0 if jobs.conf doesn't exist yet or could not be read
+     */
+    private int countConfiguredJobs() {
+        File jobsFile = new File(totalEconomy.getConfigDir(), "jobs.conf");
+
+        if (!jobsFile.exists()) {
+            return 0;
+        }
 
         try {
-            if (!hasAccount(uuid)) {
-                accountConfig.getNode(uuid.toString(), currencyName + "-balance").setValue(playerAccount.getDefaultBalance(getDefaultCurrency()));
-                accountConfig.getNode(uuid.toString(), "job").setValue("Unemployed");
-                accountConfig.getNode(uuid.toString(), "jobnotifications").setValue(totalEconomy.hasJobNotifications());
+            ConfigurationNode jobsConfig = HoconConfigurationLoader.builder().setFile(jobsFile).build().load();
+
+            return (int) jobsConfig.getChildrenMap().values().stream().filter(ConfigurationNode::hasMapChildren).count();
+        } catch (IOException e) {
+            logger.warn("Could not read jobs.conf to count the jobs!");
+
+            return 0;
+        }
+    }
+
+    /**
+     * Copy every account from another storage into the current one
+     *
+     * @param source the storage to import from
+     * @throws IOException if either storage could not be accessed
+     */
+    private void importAccounts(AccountStorage source) throws IOException {
+        ConfigurationNode sourceConfig = source.load();
+        List<String> identifiers = new ArrayList<>();
+
+        sourceConfig.getChildrenMap().keySet().forEach(key -> identifiers.add(key.toString()));
+
+        storage.save(sourceConfig, identifiers);
+        knownAccounts.addAll(identifiers);
+        source.close();
+
+        logger.info("Imported " + identifiers.size() + " account(s) from accounts.conf.");
+    }
+
+    /**
+     * Open the transaction journal and replay any transactions that were not saved before the server last went down.
+     * The affected accounts are loaded, updated and written to the storage right away so the journal can be cleared.
+     */
+    private void setupJournal() {
+        journal = new TransactionJournal(totalEconomy.getConfigDir(), logger, totalEconomy.isJournalSync());
+
+        ConfigurationNode recoveredConfig = SimpleConfigurationNode.root();
+        Set<String> replayed = journal.replay(recoveredConfig);
+
+        for (String identifier : replayed) {
+            String balance = recoveredConfig.getNode(identifier, defaultCurrencyName + "-balance").getString();
+
+            if (balance == null) {
+                continue;
+            }
+
+            AccountRecord record = getRecord(identifier);
 
-                loader.save(accountConfig);
+            if (record == null) {
+                record = new AccountRecord(identifier);
+                accounts.put(identifier, record);
             }
+
+            record.setBalance(AccountRecord.toMinorUnits(new BigDecimal(balance)));
+            knownAccounts.add(identifier);
+            idleAccounts.put(identifier, System.currentTimeMillis());
+        }
+
+        try {
+            journal.open();
         } catch (IOException e) {
-            logger.warn("Could not create account!");
+            logger.error("Could not open the transaction journal! Balance changes will only be saved by the save queue.");
+        }
+
+        if (!replayed.isEmpty()) {
+            logger.info("Recovered transactions for " + replayed.size() + " account(s) from the transaction journal.");
+
+            writeAccounts(replayed);
+        }
+    }
+
+    @Override
+    public Optional<UniqueAccount> getOrCreateAccount(UUID uuid) {
+        TEAccount playerAccount = getAccountHandle(uuid);
+        String identifier = playerAccount.getIdentifier();
+        AccountRecord record = getRecord(identifier);
+
+        if (record == null) {
+            // Don't replace an account that exists but could not be loaded
+            if (knownAccounts.contains(identifier)) {
+                return Optional.empty();
+            }
+
+            record = createRecord(identifier, playerAccount.getDefaultBalance(getDefaultCurrency()));
+
+            if (!isOnline(identifier)) {
+                idleAccounts.put(identifier, System.currentTimeMillis());
+            }
+        }
+
+        // Accounts restored from the journal only have a balance, so the job is filled in separately
+        if (record.getJob() == null) {
+            record.setJob("Unemployed");
+            record.setNotificationMode(totalEconomy.getDefaultNotificationMode());
+
+            markDirty(identifier);
         }
 
         return Optional.of(playerAccount);
@@ -101,30 +375,624 @@ public class AccountManager implements EconomyService {
 
     @Override
     public Optional<Account> getOrCreateAccount(String identifier) {
-        String currencyName = getDefaultCurrency().getDisplayName().toPlain().toLowerCase();
-        TEVirtualAccount virtualAccount = new TEVirtualAccount(totalEconomy, this, identifier);
+        TEVirtualAccount virtualAccount = virtualAccounts.getIfPresent(identifier);
 
-        try {
-            if (accountConfig.getNode(identifier, currencyName + "-balance").getValue() == null) {
-                accountConfig.getNode(identifier, currencyName + "-balance").setValue(virtualAccount.getDefaultBalance(getDefaultCurrency()));
+        if (virtualAccount == null) {
+            virtualAccount = new TEVirtualAccount(totalEconomy, this, identifier);
+            virtualAccounts.put(identifier, virtualAccount);
+        }
 
-                loader.save(accountConfig);
+        if (getRecord(identifier) == null) {
+            if (knownAccounts.contains(identifier)) {
+                return Optional.empty();
             }
-        } catch (IOException e) {
-            logger.warn("Could not create account!");
+
+            createRecord(identifier, virtualAccount.getDefaultBalance(getDefaultCurrency()));
+            idleAccounts.put(identifier, System.currentTimeMillis());
         }
 
         return Optional.of(virtualAccount);
     }
 
+    /**
+     * Get the cached handle of a player account, creating one if needed. The account itself may not exist.
+     *
+     * @param uuid the UUID of the player
+     * @return TEAccount the account handle
+     */
+    public TEAccount getAccountHandle(UUID uuid) {
+        TEAccount playerAccount = playerAccounts.getIfPresent(uuid);
+
+        if (playerAccount == null) {
+            playerAccount = new TEAccount(totalEconomy, this, uuid);
+            playerAccounts.put(uuid, playerAccount);
+        }
+
+        return playerAccount;
+    }
+
+    /**
+     * Create the record of a new account and journal its starting balance
+     *
+     * @param identifier the account identifier
+     * @param startingBalance the balance the account starts with
+     * @return AccountRecord the new record
+     */
+    private AccountRecord createRecord(String identifier, BigDecimal startingBalance) {
+        AccountRecord record = new AccountRecord(identifier);
+        record.setBalance(AccountRecord.toMinorUnits(startingBalance));
+
+        // Another thread may have created the account first
+        AccountRecord existing = accounts.putIfAbsent(identifier, record);
+
+        if (existing != null) {
+            return existing;
+        }
+
+        knownAccounts.add(identifier);
+        recordBalance(TransactionJournal.Operation.SET, record);
+
+        return record;
+    }
+
     @Override
     public boolean hasAccount(UUID uuid) {
-        return accountConfig.getNode(uuid.toString()).getValue() != null;
+        TEAccount playerAccount = playerAccounts.getIfPresent(uuid);
+
+        return hasAccount(playerAccount != null ? playerAccount.getIdentifier() : uuid.toString());
     }
 
     @Override
     public boolean hasAccount(String identifier) {
-        return accountConfig.getNode(identifier).getValue() != null;
+        return knownAccounts.contains(identifier) || isResident(identifier);
+    }
+
+    /**
+     * Read a player's account from the storage while they are logging in, so it doesn't have to be read on the server
+     * thread when they join. Called from the login thread.
+     *
+     * @param uuid the UUID of the player logging in
+     */
+    public void prefetchAccount(UUID uuid) {
+        String identifier = uuid.toString();
+
+        if (isResident(identifier) || !knownAccounts.contains(identifier)) {
+            return;
+        }
+
+        try {
+            storage.loadAccount(identifier).ifPresent(accountNode -> prefetchedAccounts.put(identifier, accountNode));
+        } catch (IOException e) {
+            logger.warn("Could not prefetch the account of " + identifier + ", it will be loaded on join.");
+        }
+    }
+
+    /**
+     * Make a joining player's account resident for as long as they are online, creating it if needed. The player's
+     * current name is saved with the account so it is known while they are offline.
+     *
+     * @param uuid the UUID of the player
+     * @param name the current name of the player
+     */
+    public void loadPlayerAccount(UUID uuid, String name) {
+        getOrCreateAccount(uuid);
+        idleAccounts.remove(uuid.toString());
+
+        nameCache.put(uuid, name);
+
+        AccountRecord record = accounts.get(uuid.toString());
+
+        if (record != null && !name.equals(record.getName())) {
+            record.setName(name);
+            markDirty(uuid);
+        }
+    }
+
+    /**
+     * Get the name saved with a player's account, reading it from the storage if the account isn't in memory. Does
+     * not make the account resident.
+     *
+     * @param uuid the UUID of the player
+     * @return Optional<String> the saved name, or empty if there is none
+     */
+    Optional<String> getStoredName(UUID uuid) {
+        String identifier = uuid.toString();
+        AccountRecord record = accounts.get(identifier);
+
+        if (record != null) {
+            return Optional.ofNullable(record.getName());
+        }
+
+        if (!knownAccounts.contains(identifier)) {
+            return Optional.empty();
+        }
+
+        try {
+            return storage.loadAccount(identifier).map(accountNode -> accountNode.getNode("name").getString());
+        } catch (IOException e) {
+            logger.warn("Could not read the name of account " + identifier + "!");
+
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Let a player's account be evicted once it has been idle for the configured time after they leave
+     *
+     * @param uuid the UUID of the player
+     */
+    public void unloadPlayerAccount(UUID uuid) {
+        prefetchedAccounts.invalidate(uuid.toString());
+
+        if (isResident(uuid.toString())) {
+            idleAccounts.put(uuid.toString(), System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * Get the record of a player's account, reading it from the storage if it isn't resident
+     *
+     * @param uuid the UUID of the player
+     * @return AccountRecord the record, or null if the account doesn't exist or could not be read
+     */
+    public AccountRecord getRecord(UUID uuid) {
+        return getRecord(uuid.toString());
+    }
+
+    /**
+     * Get the record of a player's account, reading it from the storage if it isn't resident and creating the account
+     * if the player doesn't have one yet
+     *
+     * @param uuid the UUID of the player
+     * @return Optional<AccountRecord> the record, empty if the account exists but could not be read
+     */
+    public Optional<AccountRecord> getOrLoadRecord(UUID uuid) {
+        AccountRecord record = getRecord(uuid);
+
+        if (record == null && getOrCreateAccount(uuid).isPresent()) {
+            record = getRecord(uuid);
+        }
+
+        return Optional.ofNullable(record);
+    }
+
+    /**
+     * Get the record of an account, reading it from the storage if it isn't resident. Accounts read for a player that
+     * isn't online are evicted again once they have been idle for the configured time.
+     *
+     * @param identifier the account identifier
+     * @return AccountRecord the record, or null if the account doesn't exist or could not be read
+     */
+    public AccountRecord getRecord(String identifier) {
+        AccountRecord record = accounts.get(identifier);
+
+        if (record != null) {
+            idleAccounts.replace(identifier, System.currentTimeMillis());
+
+            return record;
+        }
+
+        if (!knownAccounts.contains(identifier)) {
+            return null;
+        }
+
+        Optional<ConfigurationNode> accountNodeOpt = Optional.ofNullable(prefetchedAccounts.getIfPresent(identifier));
+        prefetchedAccounts.invalidate(identifier);
+
+        try {
+            if (!accountNodeOpt.isPresent()) {
+                accountNodeOpt = storage.loadAccount(identifier);
+            }
+        } catch (IOException e) {
+            logger.error("Could not load the account of " + identifier + "!");
+
+            return null;
+        }
+
+        if (!accountNodeOpt.isPresent()) {
+            knownAccounts.remove(identifier);
+
+            return null;
+        }
+
+        record = AccountRecord.fromNode(identifier, accountNodeOpt.get(), defaultCurrencyName);
+
+        AccountRecord existing = accounts.putIfAbsent(identifier, record);
+
+        if (existing != null) {
+            return existing;
+        }
+
+        if (!isOnline(identifier)) {
+            idleAccounts.put(identifier, System.currentTimeMillis());
+        }
+
+        return record;
+    }
+
+    /**
+     * Get the record of an account and lock it so its balance can be changed. The lock has to be released with
+     * AccountRecord.unlock() once the change has been recorded.
+     *
+     * @param identifier the account identifier
+     * @return AccountRecord the locked record, or null if the account doesn't exist or could not be read
+     */
+    public AccountRecord lockRecord(String identifier) {
+        while (true) {
+            AccountRecord record = getRecord(identifier);
+
+            if (record == null) {
+                return null;
+            }
+
+            record.lock();
+
+            // Evicted while waiting for the lock, the next lookup reads it back in
+            if (!record.isEvicted()) {
+                return record;
+            }
+
+            record.unlock();
+        }
+    }
+
+    /**
+     * Get and lock the records of several accounts. Records are locked in identifier order so two threads locking an
+     * overlapping set of accounts can't deadlock.
+     *
+     * @param identifiers the account identifiers
+     * @return Map<String, AccountRecord> the locked records in lock order, or null if any of the accounts doesn't exist
+     * or could not be read, in which case nothing is left locked
+     */
+    public Map<String, AccountRecord> lockRecords(Collection<String> identifiers) {
+        Map<String, AccountRecord> records = new LinkedHashMap<>();
+
+        for (String identifier : new TreeSet<>(identifiers)) {
+            AccountRecord record = lockRecord(identifier);
+
+            if (record == null) {
+                unlockRecords(records.values());
+
+                return null;
+            }
+
+            records.put(identifier, record);
+        }
+
+        return records;
+    }
+
+    /**
+     * Release the locks taken by lockRecords
+     *
+     * @param records the locked records
+     */
+    public void unlockRecords(Collection<AccountRecord> records) {
+        for (AccountRecord record : records) {
+            record.unlock();
+        }
+    }
+
+    /**
+     * Move an amount between two accounts as a single change. Both records are locked for the whole transfer, and the
+     * change is journaled as one record so a crash can't leave the amount taken from one account but not given to the
+     * other.
+     *
+     * @param from the account the amount is taken from
+     * @param to the account the amount is given to
+     * @param currency the currency of the amount
+     * @param amount the amount to transfer
+     * @param cause the cause of the transfer, may name an {@link IncomeSource}
+     * @return ResultType the result of the transfer
+     */
+    public ResultType transfer(Account from, Account to, Currency currency, BigDecimal amount, Cause cause) {
+        if (!currency.equals(getDefaultCurrency()) || !isOwnAccount(to)) {
+            return ResultType.FAILED;
+        }
+
+        Map<String, AccountRecord> records = lockRecords(Arrays.asList(from.getIdentifier(), to.getIdentifier()));
+
+        if (records == null) {
+            return ResultType.FAILED;
+        }
+
+        try {
+            AccountRecord fromRecord = records.get(from.getIdentifier());
+            AccountRecord toRecord = records.get(to.getIdentifier());
+            ResultType resultType = applyTransfer(fromRecord, toRecord, amount, to instanceof TEAccount);
+
+            if (resultType == ResultType.SUCCESS && fromRecord != toRecord) {
+                recordBalances(TransactionJournal.Operation.TRANSFER, records.values());
+
+                if (to instanceof TEAccount) {
+                    stats.recordIncome(cause, IncomeSource.PAY, AccountRecord.toMinorUnits(amount));
+                }
+            }
+
+            return resultType;
+        } finally {
+            unlockRecords(records.values());
+        }
+    }
+
+    /**
+     * Apply a batch of balance changes. Every account in the batch is locked once for the whole batch, the changed
+     * balances are journaled as one record and a single TEBatchTransactionEvent is posted. Operations on accounts that
+     * don't exist or could not be read fail without affecting the rest of the batch.
+     *
+     * @param batch the changes to apply
+     * @return List<TransactionResult> the result of every operation, in the order they were added to the batch
+     */
+    public List<TransactionResult> applyBatch(TransactionBatch batch) {
+        Currency currency = getDefaultCurrency();
+        Set<Context> contexts = new HashSet<>();
+        List<TransactionResult> results = new ArrayList<>(batch.size());
+        Set<String> identifiers = new HashSet<>();
+
+        for (TransactionBatch.Entry entry : batch.getEntries()) {
+            identifiers.add(entry.getAccount().getIdentifier());
+
+            if (entry.getTo() != null) {
+                identifiers.add(entry.getTo().getIdentifier());
+            }
+        }
+
+        identifiers.removeIf(identifier -> getRecord(identifier) == null);
+
+        Map<String, AccountRecord> records = lockRecords(identifiers);
+        Map<String, AccountRecord> changedRecords = new LinkedHashMap<>();
+
+        // An account failed to load between the check and the lock, fail the whole batch rather than guess
+        if (records == null) {
+            records = new HashMap<>();
+        }
+
+        try {
+            for (TransactionBatch.Entry entry : batch.getEntries()) {
+                Account account = entry.getAccount();
+                AccountRecord record = isOwnAccount(account) ? records.get(account.getIdentifier()) : null;
+                ResultType resultType = ResultType.FAILED;
+
+                if (record != null) {
+                    switch (entry.getType()) {
+                        case DEPOSIT:
+                            long oldBalance = record.getBalance();
+
+                            resultType = applyDeposit(record, entry.getAmount(), account instanceof TEAccount);
+
+                            if (resultType == ResultType.SUCCESS && account instanceof TEAccount) {
+                                stats.recordIncome(batch.getCause(), IncomeSource.OTHER, record.getBalance() - oldBalance);
+                            }
+
+                            break;
+                        case WITHDRAW:
+                            resultType = applyWithdraw(record, entry.getAmount());
+                            break;
+                        case SET:
+                            resultType = applySet(record, entry.getAmount());
+                            break;
+                        case TRANSFER:
+                            AccountRecord toRecord = isOwnAccount(entry.getTo()) ? records.get(entry.getTo().getIdentifier()) : null;
+
+                            if (toRecord != null) {
+                                resultType = applyTransfer(record, toRecord, entry.getAmount(), entry.getTo() instanceof TEAccount);
+
+                                if (resultType == ResultType.SUCCESS) {
+                                    changedRecords.put(toRecord.getIdentifier(), toRecord);
+
+                                    if (entry.getTo() instanceof TEAccount && record != toRecord) {
+                                        stats.recordIncome(batch.getCause(), IncomeSource.PAY, AccountRecord.toMinorUnits(entry.getAmount()));
+                                    }
+                                }
+                            }
+
+                            break;
+                    }
+                }
+
+                if (resultType == ResultType.SUCCESS) {
+                    changedRecords.put(record.getIdentifier(), record);
+                }
+
+                if (entry.getType() == TransactionBatch.Type.TRANSFER) {
+                    results.add(new TETransferResult(account, entry.getTo(), currency, entry.getAmount(), contexts, resultType, TransactionTypes.TRANSFER));
+                } else {
+                    results.add(new TETransactionResult(account, currency, entry.getAmount(), contexts, resultType,
+                            entry.getType() == TransactionBatch.Type.WITHDRAW ? TransactionTypes.WITHDRAW : TransactionTypes.DEPOSIT));
+                }
+            }
+
+            if (!changedRecords.isEmpty()) {
+                recordBalances(TransactionJournal.Operation.BATCH, changedRecords.values());
+            }
+        } finally {
+            unlockRecords(records.values());
+        }
+
+        totalEconomy.getGame().getEventManager().post(new TEBatchTransactionEvent(batch.getCause(), results));
+
+        return results;
+    }
+
+    /**
+     * Add an amount to a locked record
+     *
+     * @param record the locked record
+     * @param amount the amount to add
+     * @param capped whether or not the money cap applies to the account
+     * @return ResultType the result of the deposit
+     */
+    ResultType applyDeposit(AccountRecord record, BigDecimal amount, boolean capped) {
+        long newBalance;
+
+        try {
+            newBalance = Math.addExact(record.getBalance(), AccountRecord.toMinorUnits(amount));
+        } catch (ArithmeticException e) {
+            return ResultType.FAILED;
+        }
+
+        // Reset balance to the money cap if it goes over
+        if (capped && totalEconomy.isLoadMoneyCap() && newBalance > totalEconomy.getMoneyCapMinorUnits()) {
+            newBalance = totalEconomy.getMoneyCapMinorUnits();
+        }
+
+        record.setBalance(newBalance);
+
+        return ResultType.SUCCESS;
+    }
+
+    /**
+     * Take an amount from a locked record
+     *
+     * @param record the locked record
+     * @param amount the amount to take
+     * @return ResultType the result of the withdrawal
+     */
+    ResultType applyWithdraw(AccountRecord record, BigDecimal amount) {
+        long newBalance;
+
+        try {
+            // Rounded up so a fraction of a cent is never withdrawn for free
+            newBalance = record.getBalance() - AccountRecord.toMinorUnits(amount, BigDecimal.ROUND_UP);
+        } catch (ArithmeticException e) {
+            return ResultType.ACCOUNT_NO_FUNDS;
+        }
+
+        if (newBalance < 0) {
+            return ResultType.ACCOUNT_NO_FUNDS;
+        }
+
+        record.setBalance(newBalance);
+
+        return ResultType.SUCCESS;
+    }
+
+    /**
+     * Set the balance of a locked record
+     *
+     * @param record the locked record
+     * @param amount the new balance
+     * @return ResultType the result of the change
+     */
+    ResultType applySet(AccountRecord record, BigDecimal amount) {
+        try {
+            record.setBalance(AccountRecord.toMinorUnits(amount));
+        } catch (ArithmeticException e) {
+            return ResultType.FAILED;
+        }
+
+        return ResultType.SUCCESS;
+    }
+
+    /**
+     * Move an amount between two locked records
+     *
+     * @param fromRecord the locked record the amount is taken from
+     * @param toRecord the locked record the amount is given to
+     * @param amount the amount to move
+     * @param capped whether or not the money cap applies to the receiving account
+     * @return ResultType the result of the transfer
+     */
+    ResultType applyTransfer(AccountRecord fromRecord, AccountRecord toRecord, BigDecimal amount, boolean capped) {
+        long minorUnits;
+
+        try {
+            minorUnits = AccountRecord.toMinorUnits(amount);
+        } catch (ArithmeticException e) {
+            return ResultType.FAILED;
+        }
+
+        if (fromRecord.getBalance() < minorUnits) {
+            return ResultType.ACCOUNT_NO_FUNDS;
+        }
+
+        if (fromRecord == toRecord) {
+            return ResultType.SUCCESS;
+        }
+
+        long newBalance;
+
+        try {
+            newBalance = Math.addExact(toRecord.getBalance(), minorUnits);
+        } catch (ArithmeticException e) {
+            return ResultType.ACCOUNT_NO_SPACE;
+        }
+
+        if (capped && totalEconomy.isLoadMoneyCap() && newBalance > totalEconomy.getMoneyCapMinorUnits()) {
+            return ResultType.ACCOUNT_NO_SPACE;
+        }
+
+        fromRecord.setBalance(fromRecord.getBalance() - minorUnits);
+        toRecord.setBalance(newBalance);
+
+        return ResultType.SUCCESS;
+    }
+
+    private boolean isOwnAccount(Account account) {
+        return account instanceof TEAccount || account instanceof TEVirtualAccount;
+    }
+
+    /**
+     * Remove accounts from memory that have been idle longer than the configured time. Accounts with changes that
+     * have not been written yet are kept until they are, and nothing is evicted while a save is in progress so a
+     * following read can't see an older stored copy.
+     */
+    private void evictIdleAccounts() {
+        if (saveQueue.isSaving()) {
+            return;
+        }
+
+        long cutoff = System.currentTimeMillis() - TimeUnit.SECONDS.toMillis(totalEconomy.getAccountIdleTimeout());
+        int evicted = 0;
+
+        for (Map.Entry<String, Long> entry : idleAccounts.entrySet()) {
+            String identifier = entry.getKey();
+
+            if (entry.getValue() > cutoff || isOnline(identifier)) {
+                continue;
+            }
+
+            AccountRecord record = accounts.get(identifier);
+
+            if (record == null) {
+                idleAccounts.remove(identifier);
+                continue;
+            }
+
+            // Skipped if another thread is changing the balance, changes are marked dirty while holding the lock
+            if (!record.tryLock()) {
+                continue;
+            }
+
+            try {
+                if (saveQueue.isDirty(identifier)) {
+                    continue;
+                }
+
+                record.setEvicted();
+                accounts.remove(identifier, record);
+                idleAccounts.remove(identifier);
+                evicted++;
+            } finally {
+                record.unlock();
+            }
+        }
+
+        if (evicted > 0) {
+            logger.debug("Evicted " + evicted + " idle account(s), " + accounts.size() + " resident.");
+        }
+    }
+
+    private boolean isResident(String identifier) {
+        return accounts.containsKey(identifier);
+    }
+
+    private boolean isOnline(String identifier) {
+        if (!isUniqueIdentifier(identifier) || !totalEconomy.getGame().isServerAvailable()) {
+            return false;
+        }
+
+        return totalEconomy.getServer().getPlayer(UUID.fromString(identifier)).isPresent();
     }
 
     @Override
@@ -143,61 +1011,277 @@ public class AccountManager implements EconomyService {
     }
 
     /**
-     * Toggle a player's exp/money notifications for jobs
+     * Set how a player is notified of the exp/money they earn from jobs
      *
-     * @param player an object representing the player toggling notifications
+     * @param player an object representing the player changing their notifications
+     * @param mode the new notification mode
      */
-    public void toggleNotifications(Player player) {
-        boolean notify = accountConfig.getNode(player.getUniqueId().toString(), "jobnotifications").getBoolean();
+    public void setNotificationMode(Player player, NotificationMode mode) {
+        Optional<AccountRecord> record = getOrLoadRecord(player.getUniqueId());
 
-        if (notify == true) {
-            accountConfig.getNode(player.getUniqueId().toString(), "jobnotifications").setValue(false);
-            notify = false;
-        } else {
-            accountConfig.getNode(player.getUniqueId().toString(), "jobnotifications").setValue(true);
-            notify = true;
+        if (!record.isPresent()) {
+            player.sendMessage(Text.of(TextColors.RED, "Could not load your account."));
+
+            return;
         }
 
-        try {
-            loader.save(accountConfig);
+        record.get().setNotificationMode(mode);
 
-            if (notify == true)
-                player.sendMessage(Text.of(TextColors.GRAY, "Notifications are now ", TextColors.GREEN, "ON"));
-            else
-                player.sendMessage(Text.of(TextColors.GRAY, "Notifications are now ", TextColors.RED, "OFF"));
-        } catch (IOException e) {
-            player.sendMessage(Text.of(TextColors.RED, "Error toggling notifications! Try again. If this keeps showing up, notify the server owner or plugin developer."));
-            logger.warn("Could not save notification change!");
+        markDirty(player.getUniqueId());
+
+        player.sendMessage(Text.of(TextColors.GRAY, "Notifications are now ", mode == NotificationMode.OFF ? TextColors.RED : TextColors.GREEN,
+                mode.getName().toUpperCase()));
+    }
+
+    /**
+     * Mark a player's account as changed. The change will be written by the save queue.
+     *
+     * @param uuid the UUID of the account that changed
+     */
+    public void markDirty(UUID uuid) {
+        saveQueue.markDirty(uuid);
+    }
+
+    /**
+     * Mark an account as changed. The change will be written by the save queue.
+     *
+     * @param identifier the identifier of the account that changed
+     */
+    public void markDirty(String identifier) {
+        saveQueue.markDirty(identifier);
+    }
+
+    /**
+     * Mark the account as changed and journal its new balance. Called while holding the record's lock so journal
+     * records of the same account are written in the order the changes were made.
+     *
+     * @param operation the operation that changed the balance
+     * @param record the record of the account after the change
+     */
+    public void recordBalance(TransactionJournal.Operation operation, AccountRecord record) {
+        // Marked dirty before the journal write so a save never drops a journal record for an account it doesn't include
+        markDirty(record.getIdentifier());
+        journal.append(operation, record.getIdentifier(), defaultCurrencyName, record.getBalance());
+        updateLeaderboard(record);
+    }
+
+    /**
+     * Mark several accounts as changed and journal their new balances as a single record. Called while holding the
+     * locks of all records.
+     *
+     * @param operation the operation that changed the balances
+     * @param records the records of the accounts after the change
+     */
+    public void recordBalances(TransactionJournal.Operation operation, Collection<AccountRecord> records) {
+        for (AccountRecord record : records) {
+            markDirty(record.getIdentifier());
+        }
+
+        journal.append(operation, defaultCurrencyName, records);
+
+        for (AccountRecord record : records) {
+            updateLeaderboard(record);
+        }
+    }
+
+    /**
+     * Save a change to the stats of one of a player's jobs and move them on that job's leaderboard
+     *
+     * @param record the account that changed
+     * @param jobName the name of the job whose stats changed
+     */
+    public void recordJobStats(AccountRecord record, String jobName) {
+        markDirty(record.getIdentifier());
+
+        AccountRecord.JobStats jobStats = record.getJobStats(jobName);
+
+        if (jobStats != null && isUniqueIdentifier(record.getIdentifier())) {
+            getJobLeaderboard(jobName).update(record.getIdentifier(), jobStats.getScore());
+        }
+    }
+
+    private void updateLeaderboard(AccountRecord record) {
+        if (isUniqueIdentifier(record.getIdentifier())) {
+            leaderboard.update(record.getIdentifier(), record.getBalance());
         }
     }
 
     /**
-     * Save the account configuration file
+     * Save the account configuration file. Writes out any pending changes on the calling thread and stops the
+     * background saver, so this should only be used when the server is stopping.
      */
     public void saveAccountConfig() {
+        asyncEconomy.shutdown();
+        nameCache.shutdown();
+        evictionTask.cancel();
+        saveQueue.stop();
+        journal.close();
+        storage.close();
+    }
+
+    /**
+     * Write the passed in accounts to the storage on the calling thread
+     *
+     * @param identifiers identifiers of the accounts to write
+     * @return boolean whether or not the write succeeded
+     */
+    boolean writeAccounts(Collection<String> identifiers) {
+        long segment = rotateJournal();
+
+        return writeSnapshot(createSnapshot(identifiers), identifiers, segment);
+    }
+
+    /**
+     * Serialize the passed in accounts so they can be written on the save thread without touching the live records.
+     * Each record is copied while holding its lock so the snapshot never holds a half applied change.
+     *
+     * @param identifiers identifiers of the accounts to serialize
+     * @return ConfigurationNode the serialized accounts keyed by identifier
+     */
+    ConfigurationNode createSnapshot(Collection<String> identifiers) {
+        ConfigurationNode snapshot = SimpleConfigurationNode.root();
+
+        for (String identifier : identifiers) {
+            AccountRecord record = accounts.get(identifier);
+
+            if (record != null) {
+                record.lock();
+
+                try {
+                    record.writeTo(snapshot.getNode(identifier), defaultCurrencyName);
+                } finally {
+                    record.unlock();
+                }
+            }
+        }
+
+        return snapshot;
+    }
+
+    /**
+     * Start a new journal segment
+     *
+     * @return long the newest closed segment
+     */
+    long rotateJournal() {
+        return journal.rotate();
+    }
+
+    /**
+     * Write a snapshot to the storage and drop the journal segments the write covers
+     *
+     * @param snapshot the copied accounts
+     * @param identifiers identifiers of the accounts in the snapshot
+     * @param segment the newest journal segment covered by the snapshot
+     * @return boolean whether or not the write succeeded
+     */
+    boolean writeSnapshot(ConfigurationNode snapshot, Collection<String> identifiers, long segment) {
         try {
-            loader.save(accountConfig);
+            storage.save(snapshot, identifiers);
+            journal.compact(segment);
+
+            return true;
         } catch (IOException e) {
-            logger.error("Could not save the account configuration file!");
+            logger.error("Could not save the accounts! " + e.getMessage());
+
+            return false;
+        }
+    }
+
+    /**
+     * Get the player accounts with the highest balances in the default currency, highest first
+     *
+     * @param count maximum amount of accounts to return
+     * @return List<TEAccount> the top accounts
+     */
+    public List<TEAccount> getTopAccounts(int count) {
+        List<TEAccount> topAccounts = new ArrayList<>();
+
+        for (Leaderboard.Entry entry : leaderboard.getRange(0, count)) {
+            topAccounts.add(getAccountHandle(UUID.fromString(entry.getIdentifier())));
+        }
+
+        return topAccounts;
+    }
+
+    /**
+     * Get the leaderboard of player balances
+     *
+     * @return Leaderboard every player account ordered by balance
+     */
+    public Leaderboard getLeaderboard() {
+        return leaderboard;
+    }
+
+    /**
+     * Get the economy statistics
+     *
+     * @return EconomyStats statistics over the balances of every player account
+     */
+    public EconomyStats getStats() {
+        return stats;
+    }
+
+    /**
+     * Get the leaderboard of a job. Scores are made with {@link AccountRecord.JobStats#getScore()}.
+     *
+     * @param jobName the name of the job
+     * @return Leaderboard every player account with stats for the job ordered by level and exp
+     */
+    public Leaderboard getJobLeaderboard(String jobName) {
+        return jobLeaderboards.computeIfAbsent(jobName, k -> new Leaderboard());
+    }
+
+    /**
+     * Get the lowercase name of the default currency as it is used in the balance keys
+     *
+     * @return String the currency name
+     */
+    public String getDefaultCurrencyName() {
+        return defaultCurrencyName;
+    }
+
+    /**
+     * Determines if an account identifier belongs to a player account
+     *
+     * @param identifier the account identifier
+     * @return boolean whether or not the identifier is a UUID
+     */
+    public static boolean isUniqueIdentifier(String identifier) {
+        try {
+            UUID.fromString(identifier);
+
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
         }
     }
 
     /**
-     * Get the account configuration file
+     * Get the save queue
+     *
+     * @return AccountSaveQueue the queue that writes account changes in the background
+     */
+    public AccountSaveQueue getSaveQueue() {
+        return saveQueue;
+    }
+
+    /**
+     * Get the cache of player names
      *
-     * @return ConfigurationNode the account configuration
+     * @return PlayerNameCache the names of the players that own accounts
      */
-    public ConfigurationNode getAccountConfig() {
-        return accountConfig;
+    public PlayerNameCache getNameCache() {
+        return nameCache;
     }
 
     /**
-     * Get the configuration manager
+     * Get the asynchronous economy facade
      *
-     * @return ConfigurationLoader<CommentedConfigurationNode> the configuration loader for the account config
+     * @return AsyncEconomy access to the economy for code running off the server thread
      */
-    public ConfigurationLoader<CommentedConfigurationNode> getConfigManager() {
-        return loader;
+    public AsyncEconomy getAsyncEconomy() {
+        return asyncEconomy;
     }
 
 }
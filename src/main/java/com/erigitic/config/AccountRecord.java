@@ -0,0 +1,320 @@
+/*
+ * This file is part of Total Economy, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Eric Grandt <https://www.ericgrandt.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.erigitic.config;
+
+import ninja.leaping.configurate.ConfigurationNode;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * In-memory state of a single account. The balance of the default currency is kept as a long amount of minor units
+ * (cents) so balance changes don't need to parse or allocate BigDecimals. ConfigurationNodes are only used to read and
+ * write records from and to the storage.
+ *
+ * Virtual accounts and accounts restored from the journal have no job.
+ *
+ * The balance may be changed from any thread while holding the record's lock, and read without it. Records that have
+ * been evicted are flagged so a thread that was waiting on the lock can fetch the current record instead.
+ */
+public class AccountRecord {
+    public static final int SCALE = 2;
+
+    private final String identifier;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private volatile boolean evicted = false;
+
+    private volatile long balance;
+    private volatile String name;
+    private volatile String job;
+    private volatile NotificationMode notificationMode = NotificationMode.OFF;
+    private Map<String, JobStats> jobStats = new ConcurrentHashMap<>();
+
+    public AccountRecord(String identifier) {
+        this.identifier = identifier;
+    }
+
+    public String getIdentifier() {
+        return identifier;
+    }
+
+    public void lock() {
+        lock.lock();
+    }
+
+    public boolean tryLock() {
+        return lock.tryLock();
+    }
+
+    public void unlock() {
+        lock.unlock();
+    }
+
+    /**
+     * Determines if the record was removed from memory. Changes to an evicted record are lost, so the record should be
+     * fetched again from the AccountManager.
+     *
+     * @return boolean whether or not the record was evicted
+     */
+    public boolean isEvicted() {
+        return evicted;
+    }
+
+    void setEvicted() {
+        evicted = true;
+    }
+
+    /**
+     * Get the balance in minor units of the default currency
+     *
+     * @return long the balance
+     */
+    public long getBalance() {
+        return balance;
+    }
+
+    /**
+     * Set the balance in minor units of the default currency. The record's lock must be held.
+     *
+     * @param balance the new balance
+     */
+    public void setBalance(long balance) {
+        this.balance = balance;
+    }
+
+    /**
+     * Get the last known name of the player that owns the account
+     *
+     * @return String the player name, or null if it is not known or this is a virtual account
+     */
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getJob() {
+        return job;
+    }
+
+    public void setJob(String job) {
+        this.job = job;
+    }
+
+    public NotificationMode getNotificationMode() {
+        return notificationMode;
+    }
+
+    public void setNotificationMode(NotificationMode notificationMode) {
+        this.notificationMode = notificationMode;
+    }
+
+    /**
+     * Get the level and exp of a job, or null if the account never had the job
+     *
+     * @param jobName the name of the job
+     * @return JobStats the stats for the job
+     */
+    public JobStats getJobStats(String jobName) {
+        return jobStats.get(jobName);
+    }
+
+    /**
+     * Get the stats of every job the account has had
+     *
+     * @return Map<String, JobStats> an unmodifiable view of the stats keyed by job name
+     */
+    public Map<String, JobStats> getAllJobStats() {
+        return Collections.unmodifiableMap(jobStats);
+    }
+
+    /**
+     * Get the level and exp of a job, starting the job at level 1 if the account never had it
+     *
+     * @param jobName the name of the job
+     * @return JobStats the stats for the job
+     */
+    public JobStats getOrCreateJobStats(String jobName) {
+        return jobStats.computeIfAbsent(jobName, name -> new JobStats(1, 0));
+    }
+
+    public int getJobLevel(String jobName) {
+        JobStats stats = jobStats.get(jobName);
+
+        return stats != null ? stats.getLevel() : 0;
+    }
+
+    public int getJobExp(String jobName) {
+        JobStats stats = jobStats.get(jobName);
+
+        return stats != null ? stats.getExp() : 0;
+    }
+
+    /**
+     * Read a record from its stored form
+     *
+     * @param identifier the account identifier
+     * @param accountNode the stored account
+     * @param currencyName the lowercase name of the default currency
+     * @return AccountRecord the record
+     */
+    public static AccountRecord fromNode(String identifier, ConfigurationNode accountNode, String currencyName) {
+        AccountRecord record = new AccountRecord(identifier);
+        String balance = accountNode.getNode(currencyName + "-balance").getString();
+
+        if (balance != null) {
+            record.balance = toMinorUnits(new BigDecimal(balance));
+        }
+
+        record.name = accountNode.getNode("name").getString();
+        record.job = accountNode.getNode("job").getString();
+        record.notificationMode = NotificationMode.fromNode(accountNode);
+
+        ConfigurationNode statsNode = accountNode.getNode("jobstats");
+
+        for (Object key : statsNode.getChildrenMap().keySet()) {
+            String statName = key.toString();
+
+            if (statName.endsWith("Level")) {
+                String jobName = statName.substring(0, statName.length() - "Level".length());
+
+                record.jobStats.put(jobName, new JobStats(statsNode.getNode(statName).getInt(),
+                        statsNode.getNode(jobName + "Exp").getInt()));
+            }
+        }
+
+        return record;
+    }
+
+    /**
+     * Write the record in its stored form
+     *
+     * @param accountNode the node to write the account to
+     * @param currencyName the lowercase name of the default currency
+     */
+    public void writeTo(ConfigurationNode accountNode, String currencyName) {
+        accountNode.getNode(currencyName + "-balance").setValue(fromMinorUnits(balance));
+
+        if (name != null) {
+            accountNode.getNode("name").setValue(name);
+        }
+
+        if (job == null) {
+            return;
+        }
+
+        accountNode.getNode("job").setValue(job);
+        accountNode.getNode("notifications").setValue(notificationMode.getName());
+        accountNode.removeChild("jobnotifications");
+
+        for (Map.Entry<String, JobStats> entry : jobStats.entrySet()) {
+            accountNode.getNode("jobstats", entry.getKey() + "Level").setValue(entry.getValue().getLevel());
+            accountNode.getNode("jobstats", entry.getKey() + "Exp").setValue(entry.getValue().getExp());
+        }
+    }
+
+    /**
+     * Convert an amount to minor units, dropping any fraction of a minor unit
+     *
+     * @param amount the amount
+     * @return long the amount in minor units
+     * @throws ArithmeticException if the amount does not fit in a long
+     */
+    public static long toMinorUnits(BigDecimal amount) {
+        return toMinorUnits(amount, BigDecimal.ROUND_DOWN);
+    }
+
+    /**
+     * Convert an amount to minor units
+     *
+     * @param amount the amount
+     * @param roundingMode how to round a fraction of a minor unit
+     * @return long the amount in minor units
+     * @throws ArithmeticException if the amount does not fit in a long
+     */
+    public static long toMinorUnits(BigDecimal amount, int roundingMode) {
+        return amount.setScale(SCALE, roundingMode).unscaledValue().longValueExact();
+    }
+
+    public static BigDecimal fromMinorUnits(long amount) {
+        return BigDecimal.valueOf(amount, SCALE);
+    }
+
+    /**
+     * Level and exp of a single job
+     */
+    public static class JobStats {
+        private volatile int level;
+        private volatile int exp;
+
+        public JobStats(int level, int exp) {
+            this.level = level;
+            this.exp = exp;
+        }
+
+        public int getLevel() {
+            return level;
+        }
+
+        public void setLevel(int level) {
+            this.level = level;
+        }
+
+        public int getExp() {
+            return exp;
+        }
+
+        public void setExp(int exp) {
+            this.exp = exp;
+        }
+
+        /**
+         * Get the level and exp as a single number that orders by level first and exp second, used by the job
+         * leaderboards
+         *
+         * @return long the score
+         */
+        public long getScore() {
+            return ((long) level << 32) | (exp & 0xFFFFFFFFL);
+        }
+
+        /**
+         * Get the stats a job leaderboard score was made from
+         *
+         * @param score the score
+         * @return JobStats the stats
+         */
+        public static JobStats fromScore(long score) {
+            return new JobStats((int) (score >>> 32), (int) score);
+        }
+    }
+}
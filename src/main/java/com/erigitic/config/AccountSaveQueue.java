@@ -0,0 +1,364 @@
+/*
+ * This file is part of Total Economy, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Eric Grandt <https://www.ericgrandt.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.erigitic.config;
+
+import com.erigitic.main.TotalEconomy;
+import ninja.leaping.configurate.ConfigurationNode;
+import org.slf4j.Logger;
+import org.spongepowered.api.scheduler.Task;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Write-behind queue for the account data. Accounts are marked dirty when they change and are written out together
+ * once the save interval has passed or enough accounts are waiting, instead of rewriting the accounts file on every
+ * transaction.
+ *
+ * A flush copies the dirty accounts into a snapshot on the server thread and hands it to a dedicated save thread, so
+ * the server never waits on serialization or disk writes. Only one snapshot is written at a time; if the previous one
+ * is still being written the next flush is skipped and its accounts stay queued.
+ */
+public class AccountSaveQueue {
+    private TotalEconomy totalEconomy;
+    private AccountManager accountManager;
+    private Logger logger;
+
+    private Set<String> dirtyAccounts = ConcurrentHashMap.newKeySet();
+
+    private long saveInterval;
+    private int saveThreshold;
+    private Task task;
+    private ExecutorService saveExecutor;
+    private AtomicBoolean saving = new AtomicBoolean(false);
+
+    private volatile long lastFlush = System.currentTimeMillis();
+
+    // Metrics
+    private volatile long flushCount = 0;
+    private volatile long lastFlushMillis = 0;
+    private volatile long maxFlushMillis = 0;
+    private volatile long totalFlushMillis = 0;
+    private volatile long lastSnapshotMillis = 0;
+    private volatile int lastFlushSize = 0;
+    private volatile int peakQueueDepth = 0;
+
+    /**
+     * @param totalEconomy the plugin instance
+     * @param accountManager the account manager whose accounts are being saved
+     * @param saveInterval maximum amount of seconds a change can wait before being written
+     * @param saveThreshold amount of dirty accounts that will trigger a write before the interval has passed
+     */
+    public AccountSaveQueue(TotalEconomy totalEconomy, AccountManager accountManager, long saveInterval, int saveThreshold) {
+        this.totalEconomy = totalEconomy;
+        this.accountManager = accountManager;
+        this.saveInterval = saveInterval;
+        this.saveThreshold = saveThreshold;
+
+        logger = totalEconomy.getLogger();
+    }
+
+    /**
+     * Start the save thread and the task that checks once a second if the queue should be flushed
+     */
+    public void start() {
+        saveExecutor = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "Total Economy - Account Saver"));
+
+        task = totalEconomy.getGame().getScheduler().createTaskBuilder()
+                .execute(() -> {
+                    if (shouldFlush()) {
+                        flushAsync();
+                    }
+                })
+                .interval(1, TimeUnit.SECONDS)
+                .name("Total Economy - Account Save Check")
+                .submit(totalEconomy);
+    }
+
+    /**
+     * Stop the background saving, wait for a write that is in progress and then write out anything that is still
+     * waiting. Runs on the calling thread.
+     */
+    public void stop() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+
+        if (saveExecutor != null) {
+            saveExecutor.shutdown();
+
+            try {
+                if (!saveExecutor.awaitTermination(1, TimeUnit.MINUTES)) {
+                    logger.warn("Timed out waiting for the account saver to finish!");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            saveExecutor = null;
+        }
+
+        flush();
+    }
+
+    /**
+     * Mark an account as changed so it will be included in the next flush
+     *
+     * @param uuid the UUID of the account
+     */
+    public void markDirty(UUID uuid) {
+        markDirty(uuid.toString());
+    }
+
+    /**
+     * Mark an account as changed so it will be included in the next flush
+     *
+     * @param identifier the identifier of the account
+     */
+    public void markDirty(String identifier) {
+        dirtyAccounts.add(identifier);
+
+        int depth = dirtyAccounts.size();
+
+        if (depth > peakQueueDepth) {
+            peakQueueDepth = depth;
+        }
+    }
+
+    /**
+     * Determines if an account has changes that have not been handed to the storage yet
+     *
+     * @param identifier the identifier of the account
+     * @return boolean whether or not the account is dirty
+     */
+    public boolean isDirty(String identifier) {
+        return dirtyAccounts.contains(identifier);
+    }
+
+    /**
+     * Determines if a snapshot is currently being written on the save thread
+     *
+     * @return boolean whether or not a write is in progress
+     */
+    public boolean isSaving() {
+        return saving.get();
+    }
+
+    /**
+     * Determines if the queue is due to be flushed, either because the save interval has passed or because the
+     * amount of dirty accounts reached the save threshold.
+     *
+     * @return boolean whether or not to flush
+     */
+    private boolean shouldFlush() {
+        if (dirtyAccounts.isEmpty()) {
+            return false;
+        }
+
+        return dirtyAccounts.size() >= saveThreshold
+                || System.currentTimeMillis() - lastFlush >= TimeUnit.SECONDS.toMillis(saveInterval);
+    }
+
+    /**
+     * Snapshot the dirty accounts on the calling thread and write them on the save thread. Does nothing if the
+     * previous snapshot is still being written.
+     */
+    public void flushAsync() {
+        if (saveExecutor == null || !saving.compareAndSet(false, true)) {
+            return;
+        }
+
+        Snapshot snapshot = takeSnapshot();
+
+        if (snapshot == null) {
+            saving.set(false);
+            return;
+        }
+
+        saveExecutor.execute(() -> {
+            try {
+                write(snapshot);
+            } finally {
+                saving.set(false);
+            }
+        });
+    }
+
+    /**
+     * Snapshot and write all dirty accounts on the calling thread
+     */
+    public void flush() {
+        Snapshot snapshot = takeSnapshot();
+
+        if (snapshot != null) {
+            write(snapshot);
+        }
+    }
+
+    /**
+     * Copy the dirty accounts. The journal is rotated first so every journal segment that gets compacted after the
+     * write only holds changes to accounts in this snapshot.
+     *
+     * @return Snapshot the accounts to write, or null if nothing is dirty
+     */
+    private Snapshot takeSnapshot() {
+        lastFlush = System.currentTimeMillis();
+
+        if (dirtyAccounts.isEmpty()) {
+            return null;
+        }
+
+        long start = System.nanoTime();
+        long segment = accountManager.rotateJournal();
+
+        List<String> identifiers = new ArrayList<>(dirtyAccounts);
+        dirtyAccounts.removeAll(identifiers);
+
+        Snapshot snapshot = new Snapshot(segment, identifiers, accountManager.createSnapshot(identifiers));
+        lastSnapshotMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        return snapshot;
+    }
+
+    /**
+     * Write a snapshot. If the write fails the accounts are queued again, the live data is at least as new as the
+     * snapshot so the next flush will write them.
+     *
+     * @param snapshot the snapshot to write
+     */
+    private synchronized void write(Snapshot snapshot) {
+        long start = System.nanoTime();
+
+        if (!accountManager.writeSnapshot(snapshot.accounts, snapshot.identifiers, snapshot.segment)) {
+            dirtyAccounts.addAll(snapshot.identifiers);
+            return;
+        }
+
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        flushCount++;
+        lastFlushMillis = elapsed;
+        maxFlushMillis = Math.max(maxFlushMillis, elapsed);
+        totalFlushMillis += elapsed;
+        lastFlushSize = snapshot.identifiers.size();
+
+        logger.debug("Saved " + lastFlushSize + " account(s) in " + elapsed + "ms (snapshot took " + lastSnapshotMillis
+                + "ms, " + dirtyAccounts.size() + " still queued)");
+    }
+
+    /**
+     * Get the amount of accounts currently waiting to be written
+     *
+     * @return int queue depth
+     */
+    public int getQueueDepth() {
+        return dirtyAccounts.size();
+    }
+
+    /**
+     * Get the highest queue depth seen since the server started
+     *
+     * @return int peak queue depth
+     */
+    public int getPeakQueueDepth() {
+        return peakQueueDepth;
+    }
+
+    /**
+     * Get the amount of flushes that completed successfully
+     *
+     * @return long flush count
+     */
+    public long getFlushCount() {
+        return flushCount;
+    }
+
+    /**
+     * Get how long the last flush took
+     *
+     * @return long milliseconds
+     */
+    public long getLastFlushMillis() {
+        return lastFlushMillis;
+    }
+
+    /**
+     * Get the slowest flush since the server started
+     *
+     * @return long milliseconds
+     */
+    public long getMaxFlushMillis() {
+        return maxFlushMillis;
+    }
+
+    /**
+     * Get the average flush time since the server started
+     *
+     * @return long milliseconds
+     */
+    public long getAverageFlushMillis() {
+        return flushCount == 0 ? 0 : totalFlushMillis / flushCount;
+    }
+
+    /**
+     * Get how long copying the dirty accounts took for the last flush. This is the only part of a background flush
+     * that runs on the server thread.
+     *
+     * @return long milliseconds
+     */
+    public long getLastSnapshotMillis() {
+        return lastSnapshotMillis;
+    }
+
+    /**
+     * Get the amount of accounts written by the last flush
+     *
+     * @return int account count
+     */
+    public int getLastFlushSize() {
+        return lastFlushSize;
+    }
+
+    private static class Snapshot {
+        private final long segment;
+        private final List<String> identifiers;
+        private final ConfigurationNode accounts;
+
+        private Snapshot(long segment, List<String> identifiers, ConfigurationNode accounts) {
+            this.segment = segment;
+            this.identifiers = identifiers;
+            this.accounts = accounts;
+        }
+    }
+}
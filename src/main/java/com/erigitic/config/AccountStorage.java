@@ -0,0 +1,100 @@
+/*
+ * This file is part of Total Economy, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Eric Grandt <https://www.ericgrandt.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.erigitic.config;
+
+import ninja.leaping.configurate.ConfigurationNode;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Persistence backend for the account data. The AccountManager keeps the accounts that are in use in memory, loads
+ * others one at a time when they are needed and hands a snapshot of the accounts that changed to the storage when the
+ * save queue flushes. Saves are made from the save thread, one at a time, while accounts may be loaded from any thread.
+ */
+public interface AccountStorage {
+
+    /**
+     * Prepare the storage for use
+     *
+     * @return Set<String> identifiers of every stored account
+     * @throws IOException if the storage could not be opened
+     */
+    Set<String> open() throws IOException;
+
+    /**
+     * Load a single account. The returned node belongs to the caller, the storage must not hold on to it.
+     *
+     * @param identifier the account identifier
+     * @return Optional<ConfigurationNode> the account, or empty if it is not stored
+     * @throws IOException if the account could not be read
+     */
+    Optional<ConfigurationNode> loadAccount(String identifier) throws IOException;
+
+    /**
+     * Load every stored account, opening the storage if needed. Only used when importing accounts from one storage
+     * into another. The returned node belongs to the caller, the storage must not hold on to it.
+     *
+     * @return ConfigurationNode the accounts keyed by identifier
+     * @throws IOException if the accounts could not be read
+     */
+    ConfigurationNode load() throws IOException;
+
+    /**
+     * Write the balances, job and job stats of the passed in accounts, inserting or updating as needed
+     *
+     * @param snapshot copies of the accounts that changed, keyed by identifier
+     * @param identifiers identifiers of the accounts that changed, missing from the snapshot if they were removed
+     * @throws IOException if the accounts could not be written
+     */
+    void save(ConfigurationNode snapshot, Collection<String> identifiers) throws IOException;
+
+    /**
+     * Get the balance of every player account, used to build the balance leaderboard on startup. Virtual accounts are
+     * not included.
+     *
+     * @param currencyName the lowercase name of the currency
+     * @return Map<String, Long> balances in minor units keyed by account identifier
+     * @throws IOException if the accounts could not be read
+     */
+    Map<String, Long> getBalances(String currencyName) throws IOException;
+
+    /**
+     * Get the job stats of every player account, used to build the job leaderboards on startup
+     *
+     * @return Map<String, Map<String, AccountRecord.JobStats>> stats keyed by job name and then by account identifier
+     * @throws IOException if the accounts could not be read
+     */
+    Map<String, Map<String, AccountRecord.JobStats>> getJobStats() throws IOException;
+
+    /**
+     * Release any resources held by the storage
+     */
+    void close();
+}
@@ -0,0 +1,202 @@
+/*
+ * This file is part of Total Economy, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Eric Grandt <https://www.ericgrandt.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.erigitic.config;
+
+import com.erigitic.main.TotalEconomy;
+import org.slf4j.Logger;
+import org.spongepowered.api.event.cause.Cause;
+import org.spongepowered.api.scheduler.SpongeExecutorService;
+import org.spongepowered.api.service.economy.account.Account;
+import org.spongepowered.api.service.economy.account.UniqueAccount;
+import org.spongepowered.api.service.economy.transaction.TransactionResult;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Asynchronous access to the economy for code running off the server thread, such as web or chat bridges. Every call
+ * runs on a small dedicated pool so the caller never waits on account loading, and the returned futures can be moved
+ * back onto the server thread with {@link #sync(CompletableFuture)} when the result is used to touch the world.
+ *
+ * Futures complete exceptionally with an {@link IllegalStateException} when an account could not be loaded.
+ */
+public class AsyncEconomy {
+    private static final int THREAD_COUNT = 2;
+
+    private TotalEconomy totalEconomy;
+    private AccountManager accountManager;
+    private Logger logger;
+
+    private ExecutorService executor;
+    private SpongeExecutorService syncExecutor;
+
+    /**
+     * @param totalEconomy the plugin instance
+     * @param accountManager the account manager the calls are run against
+     */
+    public AsyncEconomy(TotalEconomy totalEconomy, AccountManager accountManager) {
+        this.totalEconomy = totalEconomy;
+        this.accountManager = accountManager;
+        logger = totalEconomy.getLogger();
+
+        AtomicInteger threadCount = new AtomicInteger();
+
+        executor = Executors.newFixedThreadPool(THREAD_COUNT, runnable -> {
+            Thread thread = new Thread(runnable, "Total Economy - Async Economy " + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+
+            return thread;
+        });
+
+        syncExecutor = totalEconomy.getGame().getScheduler().createSyncExecutor(totalEconomy);
+    }
+
+    /**
+     * Get the balance of a player's account in the default currency
+     *
+     * @param uuid the uuid of the player
+     * @return CompletableFuture<BigDecimal> the balance
+     */
+    public CompletableFuture<BigDecimal> getBalanceAsync(UUID uuid) {
+        return supply(() -> getAccount(uuid).getBalance(totalEconomy.getDefaultCurrency()));
+    }
+
+    /**
+     * Deposit an amount of the default currency into a player's account
+     *
+     * @param uuid the uuid of the player
+     * @param amount the amount to deposit
+     * @param cause the cause of the deposit
+     * @return CompletableFuture<TransactionResult> the result of the deposit
+     */
+    public CompletableFuture<TransactionResult> depositAsync(UUID uuid, BigDecimal amount, Cause cause) {
+        return supply(() -> getAccount(uuid).deposit(totalEconomy.getDefaultCurrency(), amount, cause));
+    }
+
+    /**
+     * Withdraw an amount of the default currency from a player's account
+     *
+     * @param uuid the uuid of the player
+     * @param amount the amount to withdraw
+     * @param cause the cause of the withdrawal
+     * @return CompletableFuture<TransactionResult> the result of the withdrawal
+     */
+    public CompletableFuture<TransactionResult> withdrawAsync(UUID uuid, BigDecimal amount, Cause cause) {
+        return supply(() -> getAccount(uuid).withdraw(totalEconomy.getDefaultCurrency(), amount, cause));
+    }
+
+    /**
+     * Transfer an amount of the default currency between two players' accounts
+     *
+     * @param from the uuid of the player the amount is taken from
+     * @param to the uuid of the player the amount is given to
+     * @param amount the amount to transfer
+     * @param cause the cause of the transfer
+     * @return CompletableFuture<TransactionResult> the result of the transfer
+     */
+    public CompletableFuture<TransactionResult> transferAsync(UUID from, UUID to, BigDecimal amount, Cause cause) {
+        return supply(() -> {
+            Account toAccount = getAccount(to);
+
+            return getAccount(from).transfer(toAccount, totalEconomy.getDefaultCurrency(), amount, cause);
+        });
+    }
+
+    /**
+     * Get the accounts with the highest balances
+     *
+     * @param count the maximum amount of accounts to get
+     * @return CompletableFuture<List<TEAccount>> the accounts, highest balance first
+     */
+    public CompletableFuture<List<TEAccount>> topAsync(int count) {
+        return supply(() -> accountManager.getTopAccounts(count));
+    }
+
+    /**
+     * Continue a future on the server thread. The returned future is completed on the server thread, so stages added
+     * with the non-async methods (thenAccept, thenApply, ...) before it completes run there as well. A stage added
+     * after it completed runs right away on the thread that adds it instead, so stages that touch players or the world
+     * should be added with the async methods and {@link #getSyncExecutor()}, which always run on the server thread.
+     *
+     * @param future the future to continue
+     * @return CompletableFuture<T> a future that completes on the server thread with the same result
+     */
+    public <T> CompletableFuture<T> sync(CompletableFuture<T> future) {
+        CompletableFuture<T> syncFuture = new CompletableFuture<>();
+
+        future.whenCompleteAsync((result, throwable) -> {
+            if (throwable != null) {
+                syncFuture.completeExceptionally(throwable);
+            } else {
+                syncFuture.complete(result);
+            }
+        }, syncExecutor);
+
+        return syncFuture;
+    }
+
+    /**
+     * Get the executor that runs tasks on the server thread
+     *
+     * @return Executor the server thread executor
+     */
+    public Executor getSyncExecutor() {
+        return syncExecutor;
+    }
+
+    /**
+     * Stop accepting new calls and wait for the ones that are running so their changes make it into the final save
+     */
+    public void shutdown() {
+        executor.shutdown();
+
+        try {
+            if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+                logger.warn("Timed out waiting for async economy calls to finish!");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private <T> CompletableFuture<T> supply(Supplier<T> supplier) {
+        return CompletableFuture.supplyAsync(supplier, executor);
+    }
+
+    private UniqueAccount getAccount(UUID uuid) {
+        return accountManager.getOrCreateAccount(uuid)
+                .orElseThrow(() -> new CompletionException(new IllegalStateException("Could not load the account of " + uuid)));
+    }
+}
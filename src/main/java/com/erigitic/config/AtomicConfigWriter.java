@@ -0,0 +1,93 @@
+/*
+ * This file is part of Total Economy, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Eric Grandt <https://www.ericgrandt.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.erigitic.config;
+
+import ninja.leaping.configurate.ConfigurationNode;
+import ninja.leaping.configurate.hocon.HoconConfigurationLoader;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes HOCON files without ever leaving a partially written file in place. The node is saved to a temp file that is
+ * forced to disk and then renamed over the target, and the previous versions of the file are kept as numbered backups
+ * (accounts.conf.1 being the newest).
+ */
+public class AtomicConfigWriter {
+
+    private AtomicConfigWriter() {
+
+    }
+
+    /**
+     * Save a configuration node to a file
+     *
+     * @param node the node to save
+     * @param target the file to replace
+     * @param generations amount of previous versions to keep
+     * @throws IOException if the file could not be written, in which case the target is left untouched
+     */
+    public static void save(ConfigurationNode node, File target, int generations) throws IOException {
+        Path targetPath = target.toPath();
+        Path tempPath = new File(target.getParentFile(), target.getName() + ".tmp").toPath();
+
+        HoconConfigurationLoader.builder().setPath(tempPath).build().save(node);
+
+        try (FileChannel channel = FileChannel.open(tempPath, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+
+        if (generations > 0 && Files.exists(targetPath)) {
+            for (int generation = generations - 1; generation > 0; generation--) {
+                Path older = getGeneration(target, generation);
+
+                if (Files.exists(older)) {
+                    Files.move(older, getGeneration(target, generation + 1), StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+
+            Path newest = getGeneration(target, 1);
+            Files.deleteIfExists(newest);
+
+            try {
+                Files.createLink(newest, targetPath);
+            } catch (IOException | UnsupportedOperationException e) {
+                Files.copy(targetPath, newest, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+
+        Files.move(tempPath, targetPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static Path getGeneration(File target, int generation) {
+        return new File(target.getParentFile(), target.getName() + "." + generation).toPath();
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * This file is part of Total Economy, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Eric Grandt <https://www.ericgrandt.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.erigitic.config;
+
+import org.spongepowered.api.event.cause.Cause;
+
+import java.math.BigDecimal;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Statistics over the balances of every player account. The supply, count, percentiles and Gini coefficient are read
+ * from the balance leaderboard, which already keeps the balances sorted with the totals needed, so nothing here scans
+ * the accounts. Income is counted per source as deposits and transfers happen.
+ */
+public class EconomyStats {
+    /**
+     * Name of the cause that holds the {@link IncomeSource} of a deposit or transfer
+     */
+    public static final String SOURCE = "source";
+
+    private Leaderboard leaderboard;
+    private Map<IncomeSource, LongAdder> income = new EnumMap<>(IncomeSource.class);
+
+    /**
+     * @param leaderboard the balance leaderboard
+     */
+    public EconomyStats(Leaderboard leaderboard) {
+        this.leaderboard = leaderboard;
+
+        for (IncomeSource source : IncomeSource.values()) {
+            income.put(source, new LongAdder());
+        }
+    }
+
+    /**
+     * Count money paid into a player account
+     *
+     * @param cause the cause of the deposit or transfer
+     * @param defaultSource the source used if the cause doesn't name one
+     * @param amount the amount paid in minor units
+     */
+    public void recordIncome(Cause cause, IncomeSource defaultSource, long amount) {
+        if (amount <= 0) {
+            return;
+        }
+
+        IncomeSource source = cause != null ? cause.get(SOURCE, IncomeSource.class).orElse(defaultSource) : defaultSource;
+
+        income.get(source).add(amount);
+    }
+
+    /**
+     * Get the money paid into player accounts from a source since the server started
+     *
+     * @param source the income source
+     * @return BigDecimal the total income
+     */
+    public BigDecimal getIncome(IncomeSource source) {
+        return AccountRecord.fromMinorUnits(income.get(source).sum());
+    }
+
+    /**
+     * Get the money held by every player account
+     *
+     * @return BigDecimal the money supply
+     */
+    public BigDecimal getSupply() {
+        return AccountRecord.fromMinorUnits(leaderboard.getTotal());
+    }
+
+    public int getAccountCount() {
+        return leaderboard.size();
+    }
+
+    /**
+     * Get the mean balance
+     *
+     * @return BigDecimal the mean balance, zero if there are no accounts
+     */
+    public BigDecimal getMean() {
+        Leaderboard.Totals totals = leaderboard.getTotals();
+
+        if (totals.getSize() == 0) {
+            return BigDecimal.ZERO;
+        }
+
+        return AccountRecord.fromMinorUnits(totals.getTotal())
+                .divide(BigDecimal.valueOf(totals.getSize()), AccountRecord.SCALE, BigDecimal.ROUND_HALF_UP);
+    }
+
+    /**
+     * Get the balance below which a fraction of the accounts fall, using the nearest rank
+     *
+     * @param fraction the fraction of accounts, 0.5 for the median
+     * @return BigDecimal the balance, zero if there are no accounts
+     */
+    public BigDecimal getPercentile(double fraction) {
+        Leaderboard.Entry entry = leaderboard.getPercentile(fraction);
+
+        return entry != null ? AccountRecord.fromMinorUnits(entry.getScore()) : BigDecimal.ZERO;
+    }
+
+    /**
+     * Get the Gini coefficient of the balances, 0 when every account holds the same and close to 1 when one account
+     * holds everything
+     *
+     * @return double the Gini coefficient
+     */
+    public double getGini() {
+        Leaderboard.Totals totals = leaderboard.getTotals();
+        double count = totals.getSize();
+        double total = totals.getTotal();
+
+        if (count == 0 || total == 0) {
+            return 0;
+        }
+
+        // Sum of each balance times its position from the bottom, worked out from the positions from the top
+        double ascendingWeightedTotal = (count + 1) * total - totals.getRankWeightedTotal();
+
+        return 2 * ascendingWeightedTotal / (count * total) - (count + 1) / count;
+    }
+}
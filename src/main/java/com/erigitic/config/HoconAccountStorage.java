@@ -0,0 +1,232 @@
+/*
+ * This file is part of Total Economy, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Eric Grandt <https://www.ericgrandt.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.erigitic.config;
+
+import ninja.leaping.configurate.ConfigurationNode;
+import ninja.leaping.configurate.SimpleConfigurationNode;
+import ninja.leaping.configurate.commented.CommentedConfigurationNode;
+import ninja.leaping.configurate.hocon.HoconConfigurationLoader;
+import ninja.leaping.configurate.loader.ConfigurationLoader;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Stores every account in a single HOCON file (accounts.conf). The storage keeps its own copy of the saved accounts
+ * that the changed accounts are merged into, so the whole file can be serialized on the save thread without reading
+ * the accounts the server is working with. Any change rewrites the whole file.
+ */
+public class HoconAccountStorage implements AccountStorage {
+    private File accountsFile;
+    private int generations;
+    private ConfigurationLoader<CommentedConfigurationNode> loader;
+    private ConfigurationNode storedConfig;
+
+    /**
+     * @param accountsFile the file the accounts are stored in
+     * @param generations amount of previous versions of the file to keep
+     */
+    public HoconAccountStorage(File accountsFile, int generations) {
+        this.accountsFile = accountsFile;
+        this.generations = generations;
+
+        loader = HoconConfigurationLoader.builder().setFile(accountsFile).build();
+    }
+
+    @Override
+    public Set<String> open() throws IOException {
+        storedConfig = loader.load();
+
+        if (!accountsFile.exists()) {
+            loader.save(storedConfig);
+        }
+
+        return getIdentifiers(storedConfig);
+    }
+
+    @Override
+    public synchronized Optional<ConfigurationNode> loadAccount(String identifier) {
+        return copyAccount(storedConfig, identifier);
+    }
+
+    @Override
+    public ConfigurationNode load() throws IOException {
+        if (storedConfig == null) {
+            open();
+        }
+
+        ConfigurationNode accountConfig = SimpleConfigurationNode.root();
+
+        synchronized (this) {
+            accountConfig.mergeValuesFrom(storedConfig);
+        }
+
+        return accountConfig;
+    }
+
+    @Override
+    public void save(ConfigurationNode snapshot, Collection<String> identifiers) throws IOException {
+        synchronized (this) {
+            mergeSnapshot(storedConfig, snapshot, identifiers);
+        }
+
+        AtomicConfigWriter.save(storedConfig, accountsFile, generations);
+    }
+
+    @Override
+    public synchronized Map<String, Long> getBalances(String currencyName) {
+        return findBalances(currencyName, storedConfig);
+    }
+
+    @Override
+    public synchronized Map<String, Map<String, AccountRecord.JobStats>> getJobStats() {
+        return findJobStats(storedConfig);
+    }
+
+    @Override
+    public void close() {
+
+    }
+
+    /**
+     * Get the identifiers of the accounts in an account tree
+     *
+     * @param accountConfig the accounts keyed by identifier
+     * @return Set<String> account identifiers
+     */
+    static Set<String> getIdentifiers(ConfigurationNode accountConfig) {
+        Set<String> identifiers = new HashSet<>();
+
+        accountConfig.getChildrenMap().keySet().forEach(key -> identifiers.add(key.toString()));
+
+        return identifiers;
+    }
+
+    /**
+     * Copy a single account out of an account tree
+     *
+     * @param accountConfig the accounts keyed by identifier
+     * @param identifier the account identifier
+     * @return Optional<ConfigurationNode> a copy of the account, or empty if it is not in the tree
+     */
+    static Optional<ConfigurationNode> copyAccount(ConfigurationNode accountConfig, String identifier) {
+        ConfigurationNode storedNode = accountConfig.getNode(identifier);
+
+        if (storedNode.getValue() == null) {
+            return Optional.empty();
+        }
+
+        ConfigurationNode accountNode = SimpleConfigurationNode.root();
+        accountNode.setValue(storedNode);
+
+        return Optional.of(accountNode);
+    }
+
+    /**
+     * Copy the accounts in a snapshot over the stored accounts, removing the ones that no longer exist
+     *
+     * @param storedConfig the stored accounts
+     * @param snapshot the snapshot of the changed accounts
+     * @param identifiers identifiers of the changed accounts
+     */
+    static void mergeSnapshot(ConfigurationNode storedConfig, ConfigurationNode snapshot, Collection<String> identifiers) {
+        for (String identifier : identifiers) {
+            ConfigurationNode accountNode = snapshot.getNode(identifier);
+
+            if (accountNode.getValue() != null) {
+                storedConfig.getNode(identifier).setValue(accountNode);
+            } else {
+                storedConfig.removeChild(identifier);
+            }
+        }
+    }
+
+    /**
+     * Read the balances of the player accounts in one or more account trees
+     *
+     * @param currencyName the lowercase name of the currency
+     * @param accountConfigs the accounts keyed by identifier
+     * @return Map<String, Long> balances in minor units keyed by account identifier
+     */
+    static Map<String, Long> findBalances(String currencyName, ConfigurationNode... accountConfigs) {
+        Map<String, Long> balances = new HashMap<>();
+
+        for (ConfigurationNode accountConfig : accountConfigs) {
+            accountConfig.getChildrenMap().forEach((key, accountNode) -> {
+                String identifier = key.toString();
+                String balance = accountNode.getNode(currencyName + "-balance").getString();
+
+                if (balance != null && AccountManager.isUniqueIdentifier(identifier)) {
+                    balances.put(identifier, AccountRecord.toMinorUnits(new BigDecimal(balance)));
+                }
+            });
+        }
+
+        return balances;
+    }
+
+    /**
+     * Read the job stats of the player accounts in one or more account trees
+     *
+     * @param accountConfigs the accounts keyed by identifier
+     * @return Map<String, Map<String, AccountRecord.JobStats>> stats keyed by job name and then by account identifier
+     */
+    static Map<String, Map<String, AccountRecord.JobStats>> findJobStats(ConfigurationNode... accountConfigs) {
+        Map<String, Map<String, AccountRecord.JobStats>> jobStats = new HashMap<>();
+
+        for (ConfigurationNode accountConfig : accountConfigs) {
+            accountConfig.getChildrenMap().forEach((key, accountNode) -> {
+                String identifier = key.toString();
+
+                if (!AccountManager.isUniqueIdentifier(identifier)) {
+                    return;
+                }
+
+                ConfigurationNode statsNode = accountNode.getNode("jobstats");
+
+                for (Object statKey : statsNode.getChildrenMap().keySet()) {
+                    String statName = statKey.toString();
+
+                    if (statName.endsWith("Level")) {
+                        String jobName = statName.substring(0, statName.length() - "Level".length());
+
+                        jobStats.computeIfAbsent(jobName, k -> new HashMap<>()).put(identifier, new AccountRecord.JobStats(
+                                statsNode.getNode(statName).getInt(), statsNode.getNode(jobName + "Exp").getInt()));
+                    }
+                }
+            });
+        }
+
+        return jobStats;
+    }
+}
@@ -23,21 +23,12 @@
  * SOFTWARE.
  */
 
-package com.erigitic.jobs.jobs;
+package com.erigitic.config;
 
-import com.erigitic.jobs.Job;
-import ninja.leaping.configurate.ConfigurationNode;
-
-public class WarriorJob implements Job {
-    public void setupJobValues(ConfigurationNode jobsConfig) {
-        String[][] killValues = {{"skeleton", "10", "1.00"}, {"zombie", "10", "1.00"}, {"creeper", "10", "1.00"}, {"spider", "10", "1.00"}};
-
-        for (int i = 0; i < killValues.length; i++) {
-            jobsConfig.getNode("Warrior", "kill", killValues[i][0], "expreward").setValue(killValues[i][1]);
-            jobsConfig.getNode("Warrior", "kill", killValues[i][0], "pay").setValue(killValues[i][2]);
-        }
-        jobsConfig.getNode("Warrior", "disablesalary").setValue(false);
-        jobsConfig.getNode("Warrior", "salary").setValue(10);
-        jobsConfig.getNode("Warrior", "permission").setValue("totaleconomy.job.warrior");
-    }
+/**
+ * Where money paid into a player account came from. Passed in the cause of a deposit or transfer under the name
+ * {@link EconomyStats#SOURCE}, e.g. {@code NamedCause.of(EconomyStats.SOURCE, IncomeSource.JOB)}.
+ */
+public enum IncomeSource {
+    JOB, SALARY, PAY, ADMIN, OTHER
 }
@@ -0,0 +1,521 @@
+/*
+ * This file is part of Total Economy, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Eric Grandt <https://www.ericgrandt.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.erigitic.config;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Accounts ordered by a score such as their balance, highest first. The accounts are kept in a treap where every node
+ * knows the amount of accounts and the total score below it, so a score change, the rank of an account and a page of
+ * the top scores are all O(log n) plus the size of the page instead of a sort over every account.
+ *
+ * Accounts with the same score are ordered by identifier so the order is stable.
+ *
+ * Score changes don't wait for the tree. They are put in a map of pending scores, which only keeps the latest score of
+ * each account, and whichever thread holds the tree lock moves them into the tree. A thread changing a score only
+ * drains the map if nobody else holds the lock, and every read drains it first, so a read sees every change that was
+ * made before it started.
+ */
+public class Leaderboard {
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<String, Long> pending = new ConcurrentHashMap<>();
+
+    private Node root;
+    private Map<String, Node> nodes = new HashMap<>();
+    private Random random = new Random();
+
+    // Incremented on every change so readers can tell how stale a copy of the leaderboard is
+    private long version = 0;
+
+    /**
+     * Replace the contents of the leaderboard
+     *
+     * @param scores scores keyed by account identifier
+     */
+    public void load(Map<String, Long> scores) {
+        lock.lock();
+
+        try {
+            root = null;
+            nodes.clear();
+            version++;
+
+            scores.forEach(this::apply);
+
+            // Anything that changed while loading is newer than the loaded scores
+            drain();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Add an account or move it to its new score
+     *
+     * @param identifier the account identifier
+     * @param score the new score
+     */
+    public void update(String identifier, long score) {
+        pending.put(identifier, score);
+
+        if (lock.tryLock()) {
+            try {
+                drain();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Remove an account
+     *
+     * @param identifier the account identifier
+     */
+    public void remove(String identifier) {
+        lock.lock();
+
+        try {
+            drain();
+
+            Node node = nodes.remove(identifier);
+
+            if (node != null) {
+                root = remove(root, node);
+                version++;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Move the pending scores into the tree. An entry is only removed from the pending map if it wasn't replaced
+     * while it was being applied, a newer score stays queued for the next drain. Called while holding the lock.
+     */
+    private void drain() {
+        for (Map.Entry<String, Long> entry : pending.entrySet()) {
+            String identifier = entry.getKey();
+            Long score = entry.getValue();
+
+            apply(identifier, score);
+            pending.remove(identifier, score);
+        }
+    }
+
+    private void apply(String identifier, long score) {
+        Node node = nodes.get(identifier);
+
+        if (node != null) {
+            if (node.score == score) {
+                return;
+            }
+
+            root = remove(root, node);
+        }
+
+        node = new Node(identifier, score, random.nextInt());
+        nodes.put(identifier, node);
+        root = insert(root, node);
+        version++;
+    }
+
+    /**
+     * Get a range of accounts, highest score first
+     *
+     * @param offset amount of accounts to skip
+     * @param count maximum amount of accounts to return
+     * @return List<Entry> the accounts in the range
+     */
+    public List<Entry> getRange(int offset, int count) {
+        lock.lock();
+
+        try {
+            drain();
+
+            List<Entry> entries = new ArrayList<>(Math.max(0, Math.min(count, size(root) - offset)));
+
+            collect(root, offset, offset + count, 0, entries);
+
+            return entries;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get the position of an account, starting at 1 for the highest score
+     *
+     * @param identifier the account identifier
+     * @return int the rank, or 0 if the account is not on the leaderboard
+     */
+    public int getRank(String identifier) {
+        lock.lock();
+
+        try {
+            drain();
+
+            Node target = nodes.get(identifier);
+
+            if (target == null) {
+                return 0;
+            }
+
+            int rank = 1;
+            Node node = root;
+
+            while (node != target) {
+                if (compare(target, node) < 0) {
+                    node = node.left;
+                } else {
+                    rank += size(node.left) + 1;
+                    node = node.right;
+                }
+            }
+
+            return rank + size(node.left);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get the amount of accounts on the leaderboard
+     *
+     * @return int the amount of accounts
+     */
+    public int size() {
+        lock.lock();
+
+        try {
+            drain();
+
+            return size(root);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get the sum of every score on the leaderboard
+     *
+     * @return long the total score
+     */
+    public long getTotal() {
+        lock.lock();
+
+        try {
+            drain();
+
+            return root == null ? 0 : root.total;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get the amount of accounts, the total score and the rank weighted total together, so they all describe the
+     * same state of the leaderboard
+     *
+     * @return Totals the totals
+     */
+    public Totals getTotals() {
+        lock.lock();
+
+        try {
+            drain();
+
+            return root == null ? new Totals(0, 0, 0) : new Totals(root.size, root.total, root.weightedTotal);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get the account below which a fraction of the scores fall, using the nearest rank counted from the lowest score
+     *
+     * @param fraction the fraction of accounts, 0.5 for the median
+     * @return Entry the account, or null if the leaderboard is empty
+     */
+    public Entry getPercentile(double fraction) {
+        lock.lock();
+
+        try {
+            drain();
+
+            int count = size(root);
+
+            if (count == 0) {
+                return null;
+            }
+
+            int ascendingRank = Math.max(1, Math.min(count, (int) Math.ceil(fraction * count)));
+            List<Entry> entries = new ArrayList<>(1);
+
+            // The tree is ordered highest first
+            collect(root, count - ascendingRank, count - ascendingRank + 1, 0, entries);
+
+            return entries.get(0);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get the account at a position
+     *
+     * @param index the position, starting at 0 for the highest score
+     * @return Entry the account, or null if the index is out of range
+     */
+    public Entry get(int index) {
+        List<Entry> entries = getRange(index, 1);
+
+        return entries.isEmpty() ? null : entries.get(0);
+    }
+
+    /**
+     * Get the amount of changes made to the leaderboard so far
+     *
+     * @return long the change count
+     */
+    public long getVersion() {
+        lock.lock();
+
+        try {
+            drain();
+
+            return version;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void collect(Node node, int from, int to, int base, List<Entry> entries) {
+        if (node == null || base >= to || base + node.size <= from) {
+            return;
+        }
+
+        collect(node.left, from, to, base, entries);
+
+        int rank = base + size(node.left);
+
+        if (rank >= from && rank < to) {
+            entries.add(new Entry(node.identifier, node.score, rank + 1));
+        }
+
+        collect(node.right, from, to, rank + 1, entries);
+    }
+
+    private Node insert(Node node, Node inserted) {
+        if (node == null) {
+            return inserted;
+        }
+
+        if (inserted.priority > node.priority) {
+            Node[] split = split(node, inserted);
+            inserted.left = split[0];
+            inserted.right = split[1];
+
+            return inserted.update();
+        }
+
+        if (compare(inserted, node) < 0) {
+            node.left = insert(node.left, inserted);
+        } else {
+            node.right = insert(node.right, inserted);
+        }
+
+        return node.update();
+    }
+
+    private Node remove(Node node, Node removed) {
+        if (node == removed) {
+            return merge(node.left, node.right);
+        }
+
+        if (compare(removed, node) < 0) {
+            node.left = remove(node.left, removed);
+        } else {
+            node.right = remove(node.right, removed);
+        }
+
+        return node.update();
+    }
+
+    /**
+     * Split a subtree into the nodes that come before the key and the nodes that come after it
+     */
+    private Node[] split(Node node, Node key) {
+        if (node == null) {
+            return new Node[] {null, null};
+        }
+
+        if (compare(node, key) < 0) {
+            Node[] split = split(node.right, key);
+            node.right = split[0];
+            split[0] = node.update();
+
+            return split;
+        }
+
+        Node[] split = split(node.left, key);
+        node.left = split[1];
+        split[1] = node.update();
+
+        return split;
+    }
+
+    private Node merge(Node left, Node right) {
+        if (left == null) {
+            return right;
+        }
+
+        if (right == null) {
+            return left;
+        }
+
+        if (left.priority > right.priority) {
+            left.right = merge(left.right, right);
+
+            return left.update();
+        }
+
+        right.left = merge(left, right.left);
+
+        return right.update();
+    }
+
+    private static int compare(Node a, Node b) {
+        int result = Long.compare(b.score, a.score);
+
+        return result != 0 ? result : a.identifier.compareTo(b.identifier);
+    }
+
+    private static int size(Node node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private static class Node {
+        private final String identifier;
+        private final long score;
+        private final int priority;
+
+        private Node left;
+        private Node right;
+        private int size = 1;
+        private long total;
+        private double weightedTotal;
+
+        private Node(String identifier, long score, int priority) {
+            this.identifier = identifier;
+            this.score = score;
+            this.priority = priority;
+
+            total = score;
+            weightedTotal = score;
+        }
+
+        private Node update() {
+            size = 1 + Leaderboard.size(left) + Leaderboard.size(right);
+            long leftTotal = left == null ? 0 : left.total;
+            long rightTotal = right == null ? 0 : right.total;
+            int rank = Leaderboard.size(left) + 1;
+
+            total = score + leftTotal + rightTotal;
+
+            // Every node on the right is moved down by the nodes on the left and this node
+            weightedTotal = (left == null ? 0 : left.weightedTotal) + (double) rank * score
+                    + (right == null ? 0 : right.weightedTotal + (double) rank * rightTotal);
+
+            return this;
+        }
+    }
+
+    /**
+     * The amount of accounts and the score totals at one point in time
+     */
+    public static class Totals {
+        private final int size;
+        private final long total;
+        private final double rankWeightedTotal;
+
+        private Totals(int size, long total, double rankWeightedTotal) {
+            this.size = size;
+            this.total = total;
+            this.rankWeightedTotal = rankWeightedTotal;
+        }
+
+        public int getSize() {
+            return size;
+        }
+
+        public long getTotal() {
+            return total;
+        }
+
+        /**
+         * Get the sum of every score multiplied by its rank, used to calculate how evenly the scores are spread
+         *
+         * @return double the rank weighted total
+         */
+        public double getRankWeightedTotal() {
+            return rankWeightedTotal;
+        }
+    }
+
+    /**
+     * A single account on the leaderboard
+     */
+    public static class Entry {
+        private final String identifier;
+        private final long score;
+        private final int rank;
+
+        private Entry(String identifier, long score, int rank) {
+            this.identifier = identifier;
+            this.score = score;
+            this.rank = rank;
+        }
+
+        public String getIdentifier() {
+            return identifier;
+        }
+
+        public long getScore() {
+            return score;
+        }
+
+        public int getRank() {
+            return rank;
+        }
+    }
+}
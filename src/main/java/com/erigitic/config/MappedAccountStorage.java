@@ -0,0 +1,643 @@
+/*
+ * This file is part of Total Economy, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Eric Grandt <https://www.ericgrandt.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.erigitic.config;
+
+import ninja.leaping.configurate.ConfigurationNode;
+import ninja.leaping.configurate.SimpleConfigurationNode;
+import org.slf4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Stores accounts as fixed size records in a memory mapped file (accounts.dat). Records live in an open addressed
+ * hash table keyed by the account UUID, so a save writes the changed records in place and the operating system takes
+ * care of getting the pages to disk. The mapping is forced to disk at the end of every save and on shutdown.
+ *
+ * Balances are stored as a long amount of minor units (cents) of the default currency. Job names are stored once in
+ * the header and referenced by index from the records.
+ */
+public class MappedAccountStorage implements AccountStorage {
+    private static final int MAGIC = 0x54454442;
+    private static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 4096;
+    private static final int CAPACITY_OFFSET = 8;
+    private static final int COUNT_OFFSET = 12;
+    private static final int JOB_COUNT_OFFSET = 16;
+    private static final int JOB_NAMES_OFFSET = 20;
+    private static final int JOB_NAME_SIZE = 32;
+    private static final int MAX_JOB_NAME_LENGTH = JOB_NAME_SIZE - 2;
+
+    // Amount of job names the header has room for
+    static final int MAX_JOBS = (HEADER_SIZE - JOB_NAMES_OFFSET) / JOB_NAME_SIZE;
+
+    private static final int RECORD_SIZE = 160;
+    private static final int MSB_OFFSET = 0;
+    private static final int LSB_OFFSET = 8;
+    private static final int BALANCE_OFFSET = 16;
+    private static final int FLAGS_OFFSET = 24;
+    private static final int JOB_OFFSET = 28;
+    private static final int STATS_OFFSET = 32;
+    private static final int STAT_SLOTS = 8;
+    private static final int STAT_SIZE = 12;
+    private static final int NAME_OFFSET = 128;
+    private static final int MAX_NAME_LENGTH = RECORD_SIZE - NAME_OFFSET - 2;
+
+    private static final int FLAG_USED = 1;
+    private static final int FLAG_VIRTUAL = 2;
+    private static final int FLAG_NOTIFY = 4;
+    private static final int FLAG_ACTIONBAR = 8;
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private File file;
+    private String currencyName;
+    private Logger logger;
+
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int capacity;
+    private int recordCount;
+    private List<String> jobNames = new ArrayList<>();
+
+    /**
+     * @param file the file the records are mapped from
+     * @param currencyName the lowercase name of the currency whose balance is stored
+     * @param logger the plugin logger
+     */
+    public MappedAccountStorage(File file, String currencyName, Logger logger) {
+        this.file = file;
+        this.currencyName = currencyName;
+        this.logger = logger;
+    }
+
+    @Override
+    public synchronized Set<String> open() throws IOException {
+        if (file.exists() && file.length() >= HEADER_SIZE) {
+            map(file, -1);
+        } else {
+            map(file, INITIAL_CAPACITY);
+        }
+
+        Set<String> identifiers = new HashSet<>();
+
+        for (int slot = 0; slot < capacity; slot++) {
+            int position = getPosition(slot);
+            int flags = buffer.getInt(position + FLAGS_OFFSET);
+
+            if ((flags & FLAG_USED) != 0) {
+                identifiers.add(readIdentifier(position, flags));
+            }
+        }
+
+        return identifiers;
+    }
+
+    @Override
+    public synchronized Optional<ConfigurationNode> loadAccount(String identifier) throws IOException {
+        boolean virtual = !AccountManager.isUniqueIdentifier(identifier);
+        int slot = findSlot(getKey(identifier, virtual));
+
+        if (slot < 0) {
+            return Optional.empty();
+        }
+
+        int position = getPosition(slot);
+        ConfigurationNode accountConfig = SimpleConfigurationNode.root();
+
+        readRecord(position, buffer.getInt(position + FLAGS_OFFSET), accountConfig);
+
+        return Optional.of(accountConfig.getNode(identifier));
+    }
+
+    @Override
+    public synchronized ConfigurationNode load() throws IOException {
+        if (channel == null) {
+            open();
+        }
+
+        ConfigurationNode accountConfig = SimpleConfigurationNode.root();
+
+        for (int slot = 0; slot < capacity; slot++) {
+            int position = getPosition(slot);
+            int flags = buffer.getInt(position + FLAGS_OFFSET);
+
+            if ((flags & FLAG_USED) != 0) {
+                readRecord(position, flags, accountConfig);
+            }
+        }
+
+        return accountConfig;
+    }
+
+    /**
+     * Write the accounts into their records. Accounts that don't fit in a record are not written at all, and once the
+     * others are written an IOException is thrown so the accounts stay queued and the journal keeps their changes.
+     *
+     * @param snapshot the accounts keyed by identifier
+     * @param identifiers identifiers of the accounts to write
+     * @throws IOException if the file could not be grown or an account could not be stored in full
+     */
+    @Override
+    public synchronized void save(ConfigurationNode snapshot, Collection<String> identifiers) throws IOException {
+        List<String> unstored = new ArrayList<>();
+
+        for (String identifier : identifiers) {
+            ConfigurationNode accountNode = snapshot.getNode(identifier);
+
+            if (accountNode.getValue() == null) {
+                continue;
+            }
+
+            boolean virtual = !AccountManager.isUniqueIdentifier(identifier);
+            // Virtual accounts store their identifier in the name field, player accounts the name of the player
+            String playerName = accountNode.getNode("name").getString("");
+            byte[] name = (virtual ? identifier : playerName).getBytes(StandardCharsets.UTF_8);
+
+            // The player name is only a cached copy, it is looked up again if it can't be stored
+            if (!virtual && name.length > MAX_NAME_LENGTH) {
+                name = new byte[0];
+            }
+
+            String problem = checkRecord(identifier, virtual, name, accountNode);
+
+            if (problem != null) {
+                unstored.add(problem);
+                continue;
+            }
+
+            UUID key = getKey(identifier, virtual);
+            int slot = findSlot(key);
+
+            if (slot < 0) {
+                if (recordCount + 1 > capacity * 3 / 4) {
+                    grow();
+                }
+
+                slot = -(findSlot(key) + 1);
+                recordCount++;
+                buffer.putInt(COUNT_OFFSET, recordCount);
+            }
+
+            writeRecord(getPosition(slot), key, virtual, name, accountNode);
+        }
+
+        buffer.force();
+
+        if (!unstored.isEmpty()) {
+            throw new IOException(unstored.size() + " account(s) don't fit in " + file.getName() + ": " + String.join(", ", unstored));
+        }
+    }
+
+    /**
+     * Check if an account fits in a record, including the job names it would add to the header
+     *
+     * @return String why the account doesn't fit, or null if it does
+     */
+    private String checkRecord(String identifier, boolean virtual, byte[] name, ConfigurationNode accountNode) {
+        if (virtual && name.length > MAX_NAME_LENGTH) {
+            return "the identifier of " + identifier + " is longer than " + MAX_NAME_LENGTH + " bytes";
+        }
+
+        List<String> statJobs = getStatJobs(accountNode);
+
+        if (statJobs.size() > STAT_SLOTS) {
+            return identifier + " has stats for more than " + STAT_SLOTS + " jobs";
+        }
+
+        Set<String> accountJobs = new HashSet<>(statJobs);
+        String job = accountNode.getNode("job").getString();
+
+        if (job != null) {
+            accountJobs.add(job);
+        }
+
+        int newJobs = 0;
+
+        for (String jobName : accountJobs) {
+            if (jobNames.contains(jobName)) {
+                continue;
+            }
+
+            if (jobName.getBytes(StandardCharsets.UTF_8).length > MAX_JOB_NAME_LENGTH) {
+                return "the job name " + jobName + " of " + identifier + " is longer than " + MAX_JOB_NAME_LENGTH + " bytes";
+            }
+
+            newJobs++;
+        }
+
+        if (jobNames.size() + newJobs > MAX_JOBS) {
+            return identifier + " has a job that doesn't fit, at most " + MAX_JOBS + " jobs can be stored";
+        }
+
+        return null;
+    }
+
+    /**
+     * Get the names of the jobs an account has stats for
+     *
+     * @param accountNode the account
+     * @return List<String> the job names
+     */
+    private List<String> getStatJobs(ConfigurationNode accountNode) {
+        List<String> statJobs = new ArrayList<>();
+
+        for (Object statKey : accountNode.getNode("jobstats").getChildrenMap().keySet()) {
+            String statName = statKey.toString();
+
+            if (statName.endsWith("Level")) {
+                statJobs.add(statName.substring(0, statName.length() - "Level".length()));
+            }
+        }
+
+        return statJobs;
+    }
+
+    @Override
+    public synchronized Map<String, Long> getBalances(String currencyName) {
+        Map<String, Long> balances = new HashMap<>();
+
+        for (int slot = 0; slot < capacity; slot++) {
+            int position = getPosition(slot);
+            int flags = buffer.getInt(position + FLAGS_OFFSET);
+
+            if ((flags & FLAG_USED) != 0 && (flags & FLAG_VIRTUAL) == 0) {
+                String identifier = new UUID(buffer.getLong(position + MSB_OFFSET), buffer.getLong(position + LSB_OFFSET)).toString();
+
+                balances.put(identifier, buffer.getLong(position + BALANCE_OFFSET));
+            }
+        }
+
+        return balances;
+    }
+
+    @Override
+    public synchronized Map<String, Map<String, AccountRecord.JobStats>> getJobStats() {
+        Map<String, Map<String, AccountRecord.JobStats>> jobStats = new HashMap<>();
+
+        for (int slot = 0; slot < capacity; slot++) {
+            int position = getPosition(slot);
+            int flags = buffer.getInt(position + FLAGS_OFFSET);
+
+            if ((flags & FLAG_USED) == 0 || (flags & FLAG_VIRTUAL) != 0) {
+                continue;
+            }
+
+            String identifier = new UUID(buffer.getLong(position + MSB_OFFSET), buffer.getLong(position + LSB_OFFSET)).toString();
+
+            for (int statSlot = 0; statSlot < STAT_SLOTS; statSlot++) {
+                int statPosition = position + STATS_OFFSET + statSlot * STAT_SIZE;
+                int statJob = buffer.getInt(statPosition);
+
+                if (statJob >= 0 && statJob < jobNames.size()) {
+                    jobStats.computeIfAbsent(jobNames.get(statJob), k -> new HashMap<>()).put(identifier,
+                            new AccountRecord.JobStats(buffer.getInt(statPosition + 4), buffer.getInt(statPosition + 8)));
+                }
+            }
+        }
+
+        return jobStats;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (channel != null) {
+            buffer.force();
+
+            try {
+                channel.close();
+            } catch (IOException e) {
+                logger.warn("Could not close " + file.getName() + "!");
+            }
+
+            channel = null;
+        }
+    }
+
+    /**
+     * Map a file into memory, creating an empty table if a capacity is passed in
+     *
+     * @param target the file to map
+     * @param newCapacity the capacity of a new table, or -1 to read it from the existing header
+     * @throws IOException if the file could not be mapped or is not an account table
+     */
+    private void map(File target, int newCapacity) throws IOException {
+        channel = FileChannel.open(target.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        if (newCapacity < 0) {
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+
+            if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+                channel.close();
+                throw new IOException(target.getName() + " is not a Total Economy account table");
+            }
+
+            capacity = header.getInt(CAPACITY_OFFSET);
+        } else {
+            capacity = newCapacity;
+        }
+
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) capacity * RECORD_SIZE);
+
+        if (newCapacity < 0) {
+            recordCount = buffer.getInt(COUNT_OFFSET);
+            jobNames.clear();
+
+            int jobCount = buffer.getInt(JOB_COUNT_OFFSET);
+
+            if (jobCount < 0 || jobCount > MAX_JOBS) {
+                channel.close();
+                throw new IOException(target.getName() + " has an invalid job count of " + jobCount);
+            }
+
+            for (int i = 0; i < jobCount; i++) {
+                jobNames.add(readString(JOB_NAMES_OFFSET + i * JOB_NAME_SIZE, MAX_JOB_NAME_LENGTH));
+            }
+        } else {
+            recordCount = 0;
+
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+            buffer.putInt(CAPACITY_OFFSET, capacity);
+            buffer.putInt(COUNT_OFFSET, 0);
+
+            for (int i = 0; i < jobNames.size(); i++) {
+                writeString(JOB_NAMES_OFFSET + i * JOB_NAME_SIZE, jobNames.get(i), MAX_JOB_NAME_LENGTH);
+            }
+
+            buffer.putInt(JOB_COUNT_OFFSET, jobNames.size());
+        }
+    }
+
+    /**
+     * Double the capacity of the table. The records are rehashed into a new file which then replaces the old one.
+     *
+     * @throws IOException if the new table could not be written
+     */
+    private void grow() throws IOException {
+        MappedByteBuffer oldBuffer = buffer;
+        FileChannel oldChannel = channel;
+        int oldCapacity = capacity;
+        File resizeFile = new File(file.getParentFile(), file.getName() + ".resize");
+
+        Files.deleteIfExists(resizeFile.toPath());
+        map(resizeFile, oldCapacity * 2);
+
+        byte[] record = new byte[RECORD_SIZE];
+
+        for (int slot = 0; slot < oldCapacity; slot++) {
+            int position = HEADER_SIZE + slot * RECORD_SIZE;
+
+            if ((oldBuffer.getInt(position + FLAGS_OFFSET) & FLAG_USED) != 0) {
+                UUID key = new UUID(oldBuffer.getLong(position + MSB_OFFSET), oldBuffer.getLong(position + LSB_OFFSET));
+                int newPosition = getPosition(-(findSlot(key) + 1));
+
+                oldBuffer.position(position);
+                oldBuffer.get(record);
+                buffer.position(newPosition);
+                buffer.put(record);
+                recordCount++;
+            }
+        }
+
+        buffer.putInt(COUNT_OFFSET, recordCount);
+        buffer.force();
+        oldChannel.close();
+
+        channel.close();
+        Files.move(resizeFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        map(file, -1);
+    }
+
+    /**
+     * Find the slot of a key using linear probing
+     *
+     * @param key the record key
+     * @return int the slot holding the key, or -(slot + 1) of the empty slot where it would be inserted
+     */
+    private int findSlot(UUID key) {
+        long hash = key.getMostSignificantBits() ^ key.getLeastSignificantBits();
+        int slot = (int) (hash ^ (hash >>> 32)) & (capacity - 1);
+
+        while (true) {
+            int position = getPosition(slot);
+
+            if ((buffer.getInt(position + FLAGS_OFFSET) & FLAG_USED) == 0) {
+                return -(slot + 1);
+            }
+
+            if (buffer.getLong(position + MSB_OFFSET) == key.getMostSignificantBits()
+                    && buffer.getLong(position + LSB_OFFSET) == key.getLeastSignificantBits()) {
+                return slot;
+            }
+
+            slot = (slot + 1) & (capacity - 1);
+        }
+    }
+
+    private void writeRecord(int position, UUID key, boolean virtual, byte[] name, ConfigurationNode accountNode) {
+        String balance = accountNode.getNode(currencyName + "-balance").getString("0");
+        int flags = FLAG_USED;
+
+        if (virtual) {
+            flags |= FLAG_VIRTUAL;
+        }
+
+        // Chat notifications keep the flag they had before there were modes, the action bar adds a second flag
+        NotificationMode notificationMode = NotificationMode.fromNode(accountNode);
+
+        if (notificationMode != NotificationMode.OFF) {
+            flags |= FLAG_NOTIFY;
+        }
+
+        if (notificationMode == NotificationMode.ACTIONBAR) {
+            flags |= FLAG_ACTIONBAR;
+        }
+
+        buffer.putLong(position + MSB_OFFSET, key.getMostSignificantBits());
+        buffer.putLong(position + LSB_OFFSET, key.getLeastSignificantBits());
+        buffer.putLong(position + BALANCE_OFFSET, AccountRecord.toMinorUnits(new BigDecimal(balance)));
+        buffer.putInt(position + JOB_OFFSET, getJobIndex(accountNode.getNode("job").getString()));
+
+        int slot = 0;
+        ConfigurationNode statsNode = accountNode.getNode("jobstats");
+
+        for (String jobName : getStatJobs(accountNode)) {
+            int statPosition = position + STATS_OFFSET + slot * STAT_SIZE;
+
+            buffer.putInt(statPosition, getJobIndex(jobName));
+            buffer.putInt(statPosition + 4, statsNode.getNode(jobName + "Level").getInt());
+            buffer.putInt(statPosition + 8, statsNode.getNode(jobName + "Exp").getInt());
+            slot++;
+        }
+
+        for (; slot < STAT_SLOTS; slot++) {
+            buffer.putInt(position + STATS_OFFSET + slot * STAT_SIZE, -1);
+        }
+
+        buffer.putShort(position + NAME_OFFSET, (short) name.length);
+        buffer.position(position + NAME_OFFSET + 2);
+        buffer.put(name);
+
+        // Written last so a record is only picked up once it is complete
+        buffer.putInt(position + FLAGS_OFFSET, flags);
+    }
+
+    private String readIdentifier(int position, int flags) throws IOException {
+        if ((flags & FLAG_VIRTUAL) != 0) {
+            return readString(position + NAME_OFFSET, MAX_NAME_LENGTH);
+        }
+
+        return new UUID(buffer.getLong(position + MSB_OFFSET), buffer.getLong(position + LSB_OFFSET)).toString();
+    }
+
+    private void readRecord(int position, int flags, ConfigurationNode accountConfig) throws IOException {
+        ConfigurationNode accountNode = accountConfig.getNode(readIdentifier(position, flags));
+        accountNode.getNode(currencyName + "-balance").setValue(AccountRecord.fromMinorUnits(buffer.getLong(position + BALANCE_OFFSET)));
+
+        if ((flags & FLAG_VIRTUAL) != 0) {
+            return;
+        }
+
+        String name = readString(position + NAME_OFFSET, MAX_NAME_LENGTH);
+
+        if (!name.isEmpty()) {
+            accountNode.getNode("name").setValue(name);
+        }
+
+        int job = buffer.getInt(position + JOB_OFFSET);
+
+        if (job >= 0 && job < jobNames.size()) {
+            accountNode.getNode("job").setValue(jobNames.get(job));
+        }
+
+        if ((flags & FLAG_ACTIONBAR) != 0) {
+            accountNode.getNode("notifications").setValue(NotificationMode.ACTIONBAR.getName());
+        } else if ((flags & FLAG_NOTIFY) != 0) {
+            accountNode.getNode("notifications").setValue(NotificationMode.CHAT.getName());
+        } else {
+            accountNode.getNode("notifications").setValue(NotificationMode.OFF.getName());
+        }
+
+        for (int slot = 0; slot < STAT_SLOTS; slot++) {
+            int statPosition = position + STATS_OFFSET + slot * STAT_SIZE;
+            int statJob = buffer.getInt(statPosition);
+
+            if (statJob >= 0 && statJob < jobNames.size()) {
+                String jobName = jobNames.get(statJob);
+
+                accountNode.getNode("jobstats", jobName + "Level").setValue(buffer.getInt(statPosition + 4));
+                accountNode.getNode("jobstats", jobName + "Exp").setValue(buffer.getInt(statPosition + 8));
+            }
+        }
+    }
+
+    /**
+     * Get the index of a job name in the header, adding it if it isn't there yet. Accounts are checked with
+     * checkRecord first, so a new name always fits.
+     *
+     * @param jobName the name of the job
+     * @return int the job index, or -1 if there is no job
+     */
+    private int getJobIndex(String jobName) {
+        if (jobName == null) {
+            return -1;
+        }
+
+        int index = jobNames.indexOf(jobName);
+
+        if (index < 0) {
+            index = jobNames.size();
+            jobNames.add(jobName);
+
+            writeString(JOB_NAMES_OFFSET + index * JOB_NAME_SIZE, jobName, MAX_JOB_NAME_LENGTH);
+            buffer.putInt(JOB_COUNT_OFFSET, jobNames.size());
+        }
+
+        return index;
+    }
+
+    /**
+     * Read a length prefixed string
+     *
+     * @param position the position of the length
+     * @param maxLength the most bytes the field can hold
+     * @return String the string
+     * @throws IOException if the stored length doesn't fit in the field
+     */
+    private String readString(int position, int maxLength) throws IOException {
+        int length = buffer.getShort(position);
+
+        if (length < 0 || length > maxLength) {
+            throw new IOException(file.getName() + " has a string of invalid length " + length + " at " + position);
+        }
+
+        byte[] bytes = new byte[length];
+
+        buffer.position(position + 2);
+        buffer.get(bytes);
+
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private void writeString(int position, String value, int maxLength) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        int length = Math.min(bytes.length, maxLength);
+
+        buffer.putShort(position, (short) length);
+        buffer.position(position + 2);
+        buffer.put(bytes, 0, length);
+    }
+
+    private int getPosition(int slot) {
+        return HEADER_SIZE + slot * RECORD_SIZE;
+    }
+
+    /**
+     * Get the key a record is stored under. Player accounts use their UUID, virtual accounts use a UUID generated
+     * from their identifier.
+     *
+     * @param identifier the account identifier
+     * @param virtual whether or not the account is a virtual account
+     * @return UUID the record key
+     */
+    private UUID getKey(String identifier, boolean virtual) {
+        if (virtual) {
+            return UUID.nameUUIDFromBytes(("TotalEconomy:" + identifier).getBytes(StandardCharsets.UTF_8));
+        }
+
+        return UUID.fromString(identifier);
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * This file is part of Total Economy, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Eric Grandt <https://www.ericgrandt.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.erigitic.config;
+
+import ninja.leaping.configurate.ConfigurationNode;
+
+/**
+ * How a player is told about the job rewards they earn
+ */
+public enum NotificationMode {
+    OFF, CHAT, ACTIONBAR;
+
+    /**
+     * Parse a notification mode. The booleans used before there were modes are read as CHAT and OFF.
+     *
+     * @param value the stored mode
+     * @param defaultMode the mode to use if the value is missing or unknown
+     * @return NotificationMode the mode
+     */
+    public static NotificationMode parse(String value, NotificationMode defaultMode) {
+        if (value == null) {
+            return defaultMode;
+        }
+
+        if (value.equalsIgnoreCase("true")) {
+            return CHAT;
+        } else if (value.equalsIgnoreCase("false")) {
+            return OFF;
+        }
+
+        for (NotificationMode mode : values()) {
+            if (mode.name().equalsIgnoreCase(value)) {
+                return mode;
+            }
+        }
+
+        return defaultMode;
+    }
+
+    /**
+     * Read the notification mode of a stored account, falling back to the jobnotifications boolean of older accounts
+     *
+     * @param accountNode the stored account
+     * @return NotificationMode the mode
+     */
+    public static NotificationMode fromNode(ConfigurationNode accountNode) {
+        return parse(accountNode.getNode("notifications").getString(accountNode.getNode("jobnotifications").getString()), OFF);
+    }
+
+    /**
+     * Get the name the mode is stored and typed as
+     *
+     * @return String the lowercase name of the mode
+     */
+    public String getName() {
+        return name().toLowerCase();
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ * This file is part of Total Economy, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Eric Grandt <https://www.ericgrandt.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.erigitic.config;
+
+import com.erigitic.main.TotalEconomy;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.slf4j.Logger;
+import org.spongepowered.api.entity.living.player.User;
+import org.spongepowered.api.scheduler.SpongeExecutorService;
+
+import java.util.Collection;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Names of the players that own accounts. Names are saved with the account when a player joins, and a bounded amount
+ * of them is kept in memory in both directions so display names and command arguments don't have to go through the
+ * user storage.
+ *
+ * A name that isn't cached is looked up in the background, so callers never wait on a lookup. The account storage is
+ * read on a lookup thread, and only if the name isn't stored there is the user storage asked on the server thread,
+ * since the user storage is not thread safe. Every other method only touches the cache and can be called from any
+ * thread.
+ */
+public class PlayerNameCache {
+    private static final int CACHE_SIZE = 4096;
+
+    private TotalEconomy totalEconomy;
+    private AccountManager accountManager;
+    private Logger logger;
+
+    private Cache<UUID, String> names = CacheBuilder.newBuilder().maximumSize(CACHE_SIZE).build();
+    private Cache<String, UUID> uniqueIds = CacheBuilder.newBuilder().maximumSize(CACHE_SIZE).build();
+
+    private Set<UUID> pendingLookups = ConcurrentHashMap.newKeySet();
+    private ExecutorService lookupExecutor;
+    private SpongeExecutorService syncExecutor;
+
+    /**
+     * @param totalEconomy the plugin instance
+     * @param accountManager the account manager whose accounts store the names
+     */
+    public PlayerNameCache(TotalEconomy totalEconomy, AccountManager accountManager) {
+        this.totalEconomy = totalEconomy;
+        this.accountManager = accountManager;
+        logger = totalEconomy.getLogger();
+
+        lookupExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "Total Economy - Name Lookup");
+            thread.setDaemon(true);
+
+            return thread;
+        });
+
+        syncExecutor = totalEconomy.getGame().getScheduler().createSyncExecutor(totalEconomy);
+    }
+
+    /**
+     * Remember the current name of a player
+     *
+     * @param uuid the UUID of the player
+     * @param name the name of the player
+     */
+    public void put(UUID uuid, String name) {
+        String previousName = names.getIfPresent(uuid);
+
+        // The old name may belong to someone else by now
+        if (previousName != null && !previousName.equalsIgnoreCase(name)) {
+            uniqueIds.invalidate(previousName.toLowerCase());
+        }
+
+        names.put(uuid, name);
+        uniqueIds.put(name.toLowerCase(), uuid);
+    }
+
+    /**
+     * Get the name of a player if it is known without a lookup. A lookup is started in the background if it isn't.
+     *
+     * @param uuid the UUID of the player
+     * @return Optional<String> the name of the player, or empty if it isn't known yet
+     */
+    public Optional<String> getIfPresent(UUID uuid) {
+        String name = names.getIfPresent(uuid);
+
+        if (name == null) {
+            fetch(uuid);
+        }
+
+        return Optional.ofNullable(name);
+    }
+
+    /**
+     * Get the UUID of a player by name. Only names that are cached are checked.
+     *
+     * @param name the name of the player, in any case
+     * @return Optional<UUID> the UUID of the player, or empty if the name isn't cached
+     */
+    public Optional<UUID> getUniqueId(String name) {
+        return Optional.ofNullable(uniqueIds.getIfPresent(name.toLowerCase()));
+    }
+
+    /**
+     * Get the cached names
+     *
+     * @return Collection<String> a view of the cached names
+     */
+    public Collection<String> getNames() {
+        return names.asMap().values();
+    }
+
+    /**
+     * Look up the name of a player in the background if it isn't cached
+     *
+     * @param uuid the UUID of the player
+     */
+    public void fetch(UUID uuid) {
+        if (names.getIfPresent(uuid) == null && pendingLookups.add(uuid)) {
+            lookupExecutor.execute(() -> {
+                try {
+                    lookup(uuid);
+                } catch (RuntimeException e) {
+                    pendingLookups.remove(uuid);
+                    throw e;
+                }
+            });
+        }
+    }
+
+    /**
+     * Stop the background lookups
+     */
+    public void shutdown() {
+        lookupExecutor.shutdownNow();
+    }
+
+    /**
+     * Look up a name in the account storage, handing the lookup to the server thread if it isn't stored. Runs on the
+     * lookup thread.
+     */
+    private void lookup(UUID uuid) {
+        Optional<String> name = accountManager.getStoredName(uuid);
+
+        if (name.isPresent()) {
+            put(uuid, name.get());
+            pendingLookups.remove(uuid);
+
+            return;
+        }
+
+        syncExecutor.execute(() -> {
+            try {
+                lookupUser(uuid);
+            } finally {
+                pendingLookups.remove(uuid);
+            }
+        });
+    }
+
+    /**
+     * Look up a name in the user storage. Runs on the server thread.
+     */
+    private void lookupUser(UUID uuid) {
+        Optional<String> name = totalEconomy.getUserStorageService()
+                .flatMap(userStorageService -> userStorageService.get(uuid))
+                .map(User::getName);
+
+        if (name.isPresent()) {
+            put(uuid, name.get());
+        } else {
+            logger.debug("Could not find the name of " + uuid);
+        }
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * This file is part of Total Economy, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Eric Grandt <https://www.ericgrandt.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.erigitic.config;
+
+import ninja.leaping.configurate.ConfigurationNode;
+import ninja.leaping.configurate.SimpleConfigurationNode;
+import ninja.leaping.configurate.commented.CommentedConfigurationNode;
+import ninja.leaping.configurate.hocon.HoconConfigurationLoader;
+import ninja.leaping.configurate.loader.ConfigurationLoader;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Spreads the accounts over 256 HOCON files (accounts/00.conf to accounts/ff.conf) keyed by the first byte of the
+ * account UUID. A save only rewrites the shards that contain a changed account, and the shards are loaded in parallel
+ * on startup. Like HoconAccountStorage, the shards are the storage's own copy of the saved accounts.
+ */
+public class ShardedAccountStorage implements AccountStorage {
+    private static final int SHARD_COUNT = 256;
+
+    private File directory;
+    private int generations;
+    private List<ConfigurationLoader<CommentedConfigurationNode>> loaders = new ArrayList<>(SHARD_COUNT);
+    private ConfigurationNode[] shards = new ConfigurationNode[SHARD_COUNT];
+
+    /**
+     * @param directory the directory the shard files are stored in
+     * @param generations amount of previous versions of each shard to keep
+     */
+    public ShardedAccountStorage(File directory, int generations) {
+        this.directory = directory;
+        this.generations = generations;
+
+        for (int shard = 0; shard < SHARD_COUNT; shard++) {
+            File shardFile = new File(directory, String.format("%02x.conf", shard));
+
+            loaders.add(HoconConfigurationLoader.builder().setFile(shardFile).build());
+        }
+    }
+
+    @Override
+    public Set<String> open() throws IOException {
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("Could not create " + directory);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        List<Future<CommentedConfigurationNode>> futures = new ArrayList<>(SHARD_COUNT);
+
+        try {
+            for (ConfigurationLoader<CommentedConfigurationNode> loader : loaders) {
+                futures.add(executor.submit(loader::load));
+            }
+
+            Set<String> identifiers = new HashSet<>();
+
+            for (int shard = 0; shard < SHARD_COUNT; shard++) {
+                shards[shard] = futures.get(shard).get();
+                identifiers.addAll(HoconAccountStorage.getIdentifiers(shards[shard]));
+            }
+
+            return identifiers;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while loading account shards", e);
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Override
+    public synchronized Optional<ConfigurationNode> loadAccount(String identifier) {
+        return HoconAccountStorage.copyAccount(shards[getShard(identifier)], identifier);
+    }
+
+    @Override
+    public ConfigurationNode load() throws IOException {
+        if (shards[0] == null) {
+            open();
+        }
+
+        ConfigurationNode accountConfig = SimpleConfigurationNode.root();
+
+        synchronized (this) {
+            for (ConfigurationNode shard : shards) {
+                accountConfig.mergeValuesFrom(shard);
+            }
+        }
+
+        return accountConfig;
+    }
+
+    @Override
+    public void save(ConfigurationNode snapshot, Collection<String> identifiers) throws IOException {
+        Map<Integer, List<String>> dirtyShards = new TreeMap<>();
+
+        for (String identifier : identifiers) {
+            dirtyShards.computeIfAbsent(getShard(identifier), shard -> new ArrayList<>()).add(identifier);
+        }
+
+        for (Map.Entry<Integer, List<String>> entry : dirtyShards.entrySet()) {
+            int shard = entry.getKey();
+
+            synchronized (this) {
+                HoconAccountStorage.mergeSnapshot(shards[shard], snapshot, entry.getValue());
+            }
+
+            AtomicConfigWriter.save(shards[shard], new File(directory, String.format("%02x.conf", shard)), generations);
+        }
+    }
+
+    @Override
+    public synchronized Map<String, Long> getBalances(String currencyName) {
+        return HoconAccountStorage.findBalances(currencyName, shards);
+    }
+
+    @Override
+    public synchronized Map<String, Map<String, AccountRecord.JobStats>> getJobStats() {
+        return HoconAccountStorage.findJobStats(shards);
+    }
+
+    @Override
+    public void close() {
+
+    }
+
+    /**
+     * Get the shard an account is stored in. Player accounts use the first byte of their UUID, virtual accounts use
+     * the hash of their identifier.
+     *
+     * @param identifier the account identifier
+     * @return int shard index
+     */
+    static int getShard(String identifier) {
+        if (identifier.length() == 36 && AccountManager.isUniqueIdentifier(identifier)) {
+            return Integer.parseInt(identifier.substring(0, 2), 16);
+        }
+
+        return identifier.hashCode() & (SHARD_COUNT - 1);
+    }
+}
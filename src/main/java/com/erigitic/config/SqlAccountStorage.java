@@ -0,0 +1,297 @@
+/*
+ * This file is part of Total Economy, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Eric Grandt <https://www.ericgrandt.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.erigitic.config;
+
+import ninja.leaping.configurate.ConfigurationNode;
+import ninja.leaping.configurate.SimpleConfigurationNode;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.sql.*;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Stores accounts in an embedded H2 database. Accounts, balances and job stats are kept in separate tables so a save
+ * only touches the rows of the accounts that changed.
+ */
+public class SqlAccountStorage implements AccountStorage {
+    private static final String CREATE_ACCOUNTS = "CREATE TABLE IF NOT EXISTS te_accounts (id VARCHAR(64) PRIMARY KEY, "
+            + "virtual BOOLEAN NOT NULL, job VARCHAR(64), job_notifications BOOLEAN, name VARCHAR(16), notifications VARCHAR(16))";
+    private static final String ADD_ACCOUNTS_NAME = "ALTER TABLE te_accounts ADD COLUMN IF NOT EXISTS name VARCHAR(16)";
+    private static final String ADD_ACCOUNTS_NOTIFICATIONS = "ALTER TABLE te_accounts ADD COLUMN IF NOT EXISTS notifications VARCHAR(16)";
+    private static final String CREATE_BALANCES = "CREATE TABLE IF NOT EXISTS te_balances (id VARCHAR(64) NOT NULL, "
+            + "currency VARCHAR(64) NOT NULL, balance DECIMAL(19, 2) NOT NULL, PRIMARY KEY (id, currency))";
+    // Index once used for a top balances query, nothing reads it anymore and it only slows down writes
+    private static final String DROP_BALANCES_INDEX = "DROP INDEX IF EXISTS te_balances_top";
+    private static final String CREATE_JOBSTATS = "CREATE TABLE IF NOT EXISTS te_jobstats (id VARCHAR(64) NOT NULL, "
+            + "job VARCHAR(64) NOT NULL, level INT NOT NULL, exp INT NOT NULL, PRIMARY KEY (id, job))";
+
+    private static final String UPSERT_ACCOUNT = "MERGE INTO te_accounts (id, virtual, job, notifications, name) KEY (id) VALUES (?, ?, ?, ?, ?)";
+    private static final String UPSERT_BALANCE = "MERGE INTO te_balances (id, currency, balance) KEY (id, currency) VALUES (?, ?, ?)";
+    private static final String UPSERT_JOBSTATS = "MERGE INTO te_jobstats (id, job, level, exp) KEY (id, job) VALUES (?, ?, ?, ?)";
+
+    private static final String SELECT_IDENTIFIERS = "SELECT id FROM te_accounts UNION SELECT id FROM te_balances";
+
+    private static final String SELECT_BALANCES = "SELECT b.id, b.balance FROM te_balances b JOIN te_accounts a ON a.id = b.id "
+            + "WHERE b.currency = ? AND a.virtual = FALSE";
+
+    private static final String SELECT_JOBSTATS = "SELECT id, job, level, exp FROM te_jobstats";
+
+    private DataSource dataSource;
+
+    public SqlAccountStorage(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    @Override
+    public Set<String> open() throws IOException {
+        Set<String> identifiers = new HashSet<>();
+
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute(CREATE_ACCOUNTS);
+            statement.execute(ADD_ACCOUNTS_NAME);
+            statement.execute(ADD_ACCOUNTS_NOTIFICATIONS);
+            statement.execute(CREATE_BALANCES);
+            statement.execute(DROP_BALANCES_INDEX);
+            statement.execute(CREATE_JOBSTATS);
+
+            try (ResultSet result = statement.executeQuery(SELECT_IDENTIFIERS)) {
+                while (result.next()) {
+                    identifiers.add(result.getString("id"));
+                }
+            }
+        } catch (SQLException e) {
+            throw new IOException(e);
+        }
+
+        return identifiers;
+    }
+
+    @Override
+    public Optional<ConfigurationNode> loadAccount(String identifier) throws IOException {
+        ConfigurationNode accountConfig = SimpleConfigurationNode.root();
+
+        try (Connection connection = dataSource.getConnection()) {
+            readAccounts(connection, " WHERE id = ?", identifier, accountConfig);
+        } catch (SQLException e) {
+            throw new IOException(e);
+        }
+
+        ConfigurationNode accountNode = accountConfig.getNode(identifier);
+
+        return accountNode.getValue() != null ? Optional.of(accountNode) : Optional.empty();
+    }
+
+    @Override
+    public ConfigurationNode load() throws IOException {
+        ConfigurationNode accountConfig = SimpleConfigurationNode.root();
+
+        open();
+
+        try (Connection connection = dataSource.getConnection()) {
+            readAccounts(connection, "", null, accountConfig);
+        } catch (SQLException e) {
+            throw new IOException(e);
+        }
+
+        return accountConfig;
+    }
+
+    /**
+     * Read accounts from the three tables into an account tree
+     *
+     * @param connection the database connection
+     * @param where condition appended to every query, empty to read every account
+     * @param identifier the value of the identifier parameter in the condition, or null if there is none
+     * @param accountConfig the tree the accounts are read into
+     * @throws SQLException if the accounts could not be read
+     */
+    private void readAccounts(Connection connection, String where, String identifier, ConfigurationNode accountConfig) throws SQLException {
+        try (PreparedStatement statement = prepare(connection, "SELECT id, job, job_notifications, notifications, name FROM te_accounts" + where, identifier);
+             ResultSet result = statement.executeQuery()) {
+            while (result.next()) {
+                String job = result.getString("job");
+                String name = result.getString("name");
+
+                if (name != null) {
+                    accountConfig.getNode(result.getString("id"), "name").setValue(name);
+                }
+
+                if (job != null) {
+                    accountConfig.getNode(result.getString("id"), "job").setValue(job);
+
+                    // Accounts saved before there were notification modes only have the boolean
+                    if (result.getString("notifications") != null) {
+                        accountConfig.getNode(result.getString("id"), "notifications").setValue(result.getString("notifications"));
+                    } else {
+                        accountConfig.getNode(result.getString("id"), "jobnotifications").setValue(result.getBoolean("job_notifications"));
+                    }
+                }
+            }
+        }
+
+        try (PreparedStatement statement = prepare(connection, "SELECT id, currency, balance FROM te_balances" + where, identifier);
+             ResultSet result = statement.executeQuery()) {
+            while (result.next()) {
+                accountConfig.getNode(result.getString("id"), result.getString("currency") + "-balance")
+                        .setValue(result.getBigDecimal("balance"));
+            }
+        }
+
+        try (PreparedStatement statement = prepare(connection, "SELECT id, job, level, exp FROM te_jobstats" + where, identifier);
+             ResultSet result = statement.executeQuery()) {
+            while (result.next()) {
+                ConfigurationNode statsNode = accountConfig.getNode(result.getString("id"), "jobstats");
+
+                statsNode.getNode(result.getString("job") + "Level").setValue(result.getInt("level"));
+                statsNode.getNode(result.getString("job") + "Exp").setValue(result.getInt("exp"));
+            }
+        }
+    }
+
+    private PreparedStatement prepare(Connection connection, String sql, String identifier) throws SQLException {
+        PreparedStatement statement = connection.prepareStatement(sql);
+
+        if (identifier != null) {
+            statement.setString(1, identifier);
+        }
+
+        return statement;
+    }
+
+    @Override
+    public void save(ConfigurationNode snapshot, Collection<String> identifiers) throws IOException {
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+
+            try (PreparedStatement accountStatement = connection.prepareStatement(UPSERT_ACCOUNT);
+                 PreparedStatement balanceStatement = connection.prepareStatement(UPSERT_BALANCE);
+                 PreparedStatement jobStatsStatement = connection.prepareStatement(UPSERT_JOBSTATS)) {
+
+                for (String identifier : identifiers) {
+                    ConfigurationNode accountNode = snapshot.getNode(identifier);
+
+                    if (accountNode.getValue() == null) {
+                        continue;
+                    }
+
+                    accountStatement.setString(1, identifier);
+                    accountStatement.setBoolean(2, !AccountManager.isUniqueIdentifier(identifier));
+                    accountStatement.setString(3, accountNode.getNode("job").getString());
+                    accountStatement.setString(4, NotificationMode.fromNode(accountNode).getName());
+                    accountStatement.setString(5, accountNode.getNode("name").getString());
+                    accountStatement.addBatch();
+
+                    for (Map.Entry<Object, ? extends ConfigurationNode> entry : accountNode.getChildrenMap().entrySet()) {
+                        String key = entry.getKey().toString();
+
+                        if (key.endsWith("-balance")) {
+                            balanceStatement.setString(1, identifier);
+                            balanceStatement.setString(2, key.substring(0, key.length() - "-balance".length()));
+                            balanceStatement.setBigDecimal(3, new BigDecimal(entry.getValue().getString()));
+                            balanceStatement.addBatch();
+                        }
+                    }
+
+                    ConfigurationNode statsNode = accountNode.getNode("jobstats");
+
+                    for (Object key : statsNode.getChildrenMap().keySet()) {
+                        String statName = key.toString();
+
+                        if (statName.endsWith("Level")) {
+                            String jobName = statName.substring(0, statName.length() - "Level".length());
+
+                            jobStatsStatement.setString(1, identifier);
+                            jobStatsStatement.setString(2, jobName);
+                            jobStatsStatement.setInt(3, statsNode.getNode(jobName + "Level").getInt());
+                            jobStatsStatement.setInt(4, statsNode.getNode(jobName + "Exp").getInt());
+                            jobStatsStatement.addBatch();
+                        }
+                    }
+                }
+
+                accountStatement.executeBatch();
+                balanceStatement.executeBatch();
+                jobStatsStatement.executeBatch();
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            throw new IOException(e);
+        }
+    }
+
+    @Override
+    public Map<String, Long> getBalances(String currencyName) throws IOException {
+        Map<String, Long> balances = new HashMap<>();
+
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(SELECT_BALANCES)) {
+            statement.setString(1, currencyName);
+
+            try (ResultSet result = statement.executeQuery()) {
+                while (result.next()) {
+                    balances.put(result.getString("id"), AccountRecord.toMinorUnits(result.getBigDecimal("balance")));
+                }
+            }
+        } catch (SQLException e) {
+            throw new IOException(e);
+        }
+
+        return balances;
+    }
+
+    @Override
+    public Map<String, Map<String, AccountRecord.JobStats>> getJobStats() throws IOException {
+        Map<String, Map<String, AccountRecord.JobStats>> jobStats = new HashMap<>();
+
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet result = statement.executeQuery(SELECT_JOBSTATS)) {
+            while (result.next()) {
+                jobStats.computeIfAbsent(result.getString("job"), k -> new HashMap<>())
+                        .put(result.getString("id"), new AccountRecord.JobStats(result.getInt("level"), result.getInt("exp")));
+            }
+        } catch (SQLException e) {
+            throw new IOException(e);
+        }
+
+        return jobStats;
+    }
+
+    @Override
+    public void close() {
+
+    }
+}
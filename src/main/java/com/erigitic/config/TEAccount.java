@@ -26,7 +26,6 @@
 package com.erigitic.config;
 
 import com.erigitic.main.TotalEconomy;
-import ninja.leaping.configurate.ConfigurationNode;
 import org.slf4j.Logger;
 import org.spongepowered.api.event.cause.Cause;
 import org.spongepowered.api.service.context.Context;
@@ -44,21 +43,22 @@ public class TEAccount implements UniqueAccount {
     private TotalEconomy totalEconomy;
     private AccountManager accountManager;
     private UUID uuid;
+    private String identifier;
     private Logger logger;
 
-    private ConfigurationNode accountConfig;
 
     public TEAccount(TotalEconomy totalEconomy, AccountManager accountManager, UUID uuid) {
         this.totalEconomy = totalEconomy;
         this.accountManager = accountManager;
         this.uuid = uuid;
 
-        accountConfig = accountManager.getAccountConfig();
+        identifier = uuid.toString();
     }
 
     @Override
     public Text getDisplayName() {
-        return Text.of(totalEconomy.getUserStorageService().get().get(uuid).get().getName());
+        // Unknown names are looked up in the background, the UUID is shown until then
+        return Text.of(accountManager.getNameCache().getIfPresent(uuid).orElse(uuid.toString()));
     }
 
     @Override
@@ -68,27 +68,50 @@ public class TEAccount implements UniqueAccount {
 
     @Override
     public boolean hasBalance(Currency currency, Set<Context> contexts) {
-        String currencyName = currency.getDisplayName().toPlain().toLowerCase();
-
-        if (accountConfig.getNode(uuid.toString(), currencyName + "-balance").getValue() != null) {
-            return true;
-        }
-
-        return false;
+        return getRecord(currency) != null;
     }
 
     @Override
     public BigDecimal getBalance(Currency currency, Set<Context> contexts) {
-        if (hasBalance(currency, contexts)) {
-            String currencyName = currency.getDisplayName().toPlain().toLowerCase();
-            BigDecimal balance = new BigDecimal(accountConfig.getNode(uuid.toString(), currencyName + "-balance").getString());
+        AccountRecord record = getRecord(currency);
 
-            return balance;
+        if (record != null) {
+            return AccountRecord.fromMinorUnits(record.getBalance());
         }
 
         return BigDecimal.ZERO;
     }
 
+    /**
+     * Get the record holding this account's balance in the passed in currency. The account may have been evicted since
+     * this object was created, in which case it is read back in.
+     *
+     * @param currency the currency
+     * @return AccountRecord the record, or null if the account doesn't exist or has no balance in the currency
+     */
+    private AccountRecord getRecord(Currency currency) {
+        if (!currency.equals(accountManager.getDefaultCurrency())) {
+            return null;
+        }
+
+        return accountManager.getRecord(identifier);
+    }
+
+    /**
+     * Get and lock the record holding this account's balance in the passed in currency. The lock must be released once
+     * the change has been recorded.
+     *
+     * @param currency the currency
+     * @return AccountRecord the locked record, or null if the account doesn't exist or has no balance in the currency
+     */
+    private AccountRecord lockRecord(Currency currency) {
+        if (!currency.equals(accountManager.getDefaultCurrency())) {
+            return null;
+        }
+
+        return accountManager.lockRecord(identifier);
+    }
+
     @Override
     public Map<Currency, BigDecimal> getBalances(Set<Context> contexts) {
         return new HashMap<Currency, BigDecimal>();
@@ -96,21 +119,22 @@ public class TEAccount implements UniqueAccount {
 
     @Override
     public TransactionResult setBalance(Currency currency, BigDecimal amount, Cause cause, Set<Context> contexts) {
-        TransactionResult transactionResult;
-
-        if (hasBalance(currency, contexts)) {
-            String currencyName = currency.getDisplayName().toPlain().toLowerCase();
+        ResultType resultType = ResultType.FAILED;
+        AccountRecord record = lockRecord(currency);
 
-            accountConfig.getNode(uuid.toString(), currencyName + "-balance").setValue(amount.setScale(2, BigDecimal.ROUND_DOWN));
-            accountManager.saveAccountConfig();
+        if (record != null) {
+            try {
+                resultType = accountManager.applySet(record, amount);
 
-            transactionResult = new TETransactionResult(this, currency, amount, contexts, ResultType.SUCCESS, TransactionTypes.DEPOSIT);
-            totalEconomy.getGame().getEventManager().post(new TEEconomyTransactionEvent(transactionResult));
-
-            return transactionResult;
+                if (resultType == ResultType.SUCCESS) {
+                    accountManager.recordBalance(TransactionJournal.Operation.SET, record);
+                }
+            } finally {
+                record.unlock();
+            }
         }
 
-        transactionResult = new TETransactionResult(this, currency, amount, contexts, ResultType.FAILED, TransactionTypes.DEPOSIT);
+        TransactionResult transactionResult = new TETransactionResult(this, currency, amount, contexts, resultType, TransactionTypes.DEPOSIT);
         totalEconomy.getGame().getEventManager().post(new TEEconomyTransactionEvent(transactionResult));
 
         return transactionResult;
@@ -135,31 +159,25 @@ public class TEAccount implements UniqueAccount {
 
     @Override
     public TransactionResult deposit(Currency currency, BigDecimal amount, Cause cause, Set<Context> contexts) {
-        TransactionResult transactionResult;
+        ResultType resultType = ResultType.FAILED;
+        AccountRecord record = lockRecord(currency);
 
-        if (hasBalance(currency, contexts)) {
-            String currencyName = currency.getDisplayName().toPlain().toLowerCase();
-            BigDecimal curBalance = getBalance(currency, contexts);
-            BigDecimal newBalance = curBalance.add(amount);
+        if (record != null) {
+            try {
+                long oldBalance = record.getBalance();
 
-            accountConfig.getNode(uuid.toString(), currencyName + "-balance").setValue(newBalance.setScale(2, BigDecimal.ROUND_DOWN));
+                resultType = accountManager.applyDeposit(record, amount, true);
 
-            // Reset balance to the money cap if it goes over
-            if (totalEconomy.isLoadMoneyCap()) {
-                if (getBalance(currency, contexts).compareTo(totalEconomy.getMoneyCap()) == 1) {
-                    accountConfig.getNode(uuid.toString(), currencyName + "-balance").setValue(totalEconomy.getMoneyCap());
+                if (resultType == ResultType.SUCCESS) {
+                    accountManager.recordBalance(TransactionJournal.Operation.DEPOSIT, record);
+                    accountManager.getStats().recordIncome(cause, IncomeSource.OTHER, record.getBalance() - oldBalance);
                 }
+            } finally {
+                record.unlock();
             }
-            
-            accountManager.saveAccountConfig();
-
-            transactionResult = new TETransactionResult(this, currency, amount, contexts, ResultType.SUCCESS, TransactionTypes.DEPOSIT);
-            totalEconomy.getGame().getEventManager().post(new TEEconomyTransactionEvent(transactionResult));
-
-            return transactionResult;
         }
 
-        transactionResult = new TETransactionResult(this, currency, amount, contexts, ResultType.FAILED, TransactionTypes.DEPOSIT);
+        TransactionResult transactionResult = new TETransactionResult(this, currency, amount, contexts, resultType, TransactionTypes.DEPOSIT);
         totalEconomy.getGame().getEventManager().post(new TEEconomyTransactionEvent(transactionResult));
 
         return transactionResult;
@@ -167,30 +185,22 @@ public class TEAccount implements UniqueAccount {
 
     @Override
     public TransactionResult withdraw(Currency currency, BigDecimal amount, Cause cause, Set<Context> contexts) {
-        TransactionResult transactionResult;
-
-        if (hasBalance(currency, contexts)) {
-            String currencyName = currency.getDisplayName().toPlain().toLowerCase();
-            BigDecimal curBalance =  getBalance(currency, contexts);
-            BigDecimal newBalance = curBalance.subtract(amount);
-
-            if (newBalance.compareTo(BigDecimal.ZERO) >= 0) {
-                accountConfig.getNode(uuid.toString(), currencyName + "-balance").setValue(newBalance.setScale(2, BigDecimal.ROUND_DOWN));
-                accountManager.saveAccountConfig();
-
-                transactionResult = new TETransactionResult(this, currency, amount, contexts, ResultType.SUCCESS, TransactionTypes.WITHDRAW);
-                totalEconomy.getGame().getEventManager().post(new TEEconomyTransactionEvent(transactionResult));
+        ResultType resultType = ResultType.FAILED;
+        AccountRecord record = lockRecord(currency);
 
-                return transactionResult;
-            } else {
-                transactionResult = new TETransactionResult(this, currency, amount, contexts, ResultType.ACCOUNT_NO_FUNDS, TransactionTypes.DEPOSIT);
-                totalEconomy.getGame().getEventManager().post(new TEEconomyTransactionEvent(transactionResult));
+        if (record != null) {
+            try {
+                resultType = accountManager.applyWithdraw(record, amount);
 
-                return transactionResult;
+                if (resultType == ResultType.SUCCESS) {
+                    accountManager.recordBalance(TransactionJournal.Operation.WITHDRAW, record);
+                }
+            } finally {
+                record.unlock();
             }
         }
 
-        transactionResult = new TETransactionResult(this, currency, amount, contexts, ResultType.FAILED, TransactionTypes.DEPOSIT);
+        TransactionResult transactionResult = new TETransactionResult(this, currency, amount, contexts, resultType, TransactionTypes.WITHDRAW);
         totalEconomy.getGame().getEventManager().post(new TEEconomyTransactionEvent(transactionResult));
 
         return transactionResult;
@@ -198,38 +208,9 @@ public class TEAccount implements UniqueAccount {
 
     @Override
     public TransferResult transfer(Account to, Currency currency, BigDecimal amount, Cause cause, Set<Context> contexts) {
-        TransferResult transferResult;
-
-        if (hasBalance(currency, contexts)) {
-            BigDecimal curBalance = getBalance(currency, contexts);
-            BigDecimal newBalance = curBalance.subtract(amount);
-
-            //TODO: Might not need to check if the balance is greater then zero here since it is being done in the withdraw function
-            if (newBalance.compareTo(BigDecimal.ZERO) >= 0) {
-                withdraw(currency, amount, cause, contexts);
-
-                if (to.hasBalance(currency)) {
-                    to.deposit(currency, amount, cause, contexts);
-
-                    transferResult = new TETransferResult(this, to, currency, amount, contexts, ResultType.SUCCESS, TransactionTypes.TRANSFER);
-                    totalEconomy.getGame().getEventManager().post(new TEEconomyTransactionEvent(transferResult));
-
-                    return transferResult;
-                } else {
-                    transferResult = new TETransferResult(this, to, currency, amount, contexts, ResultType.FAILED, TransactionTypes.TRANSFER);
-                    totalEconomy.getGame().getEventManager().post(new TEEconomyTransactionEvent(transferResult));
-
-                    return transferResult;
-                }
-            } else {
-                transferResult = new TETransferResult(this, to, currency, amount, contexts, ResultType.ACCOUNT_NO_FUNDS, TransactionTypes.TRANSFER);
-                totalEconomy.getGame().getEventManager().post(new TEEconomyTransactionEvent(transferResult));
-
-                return transferResult;
-            }
-        }
+        ResultType resultType = accountManager.transfer(this, to, currency, amount, cause);
 
-        transferResult = new TETransferResult(this, to, currency, amount, contexts, ResultType.FAILED, TransactionTypes.TRANSFER);
+        TransferResult transferResult = new TETransferResult(this, to, currency, amount, contexts, resultType, TransactionTypes.TRANSFER);
         totalEconomy.getGame().getEventManager().post(new TEEconomyTransactionEvent(transferResult));
 
         return transferResult;
@@ -237,7 +218,7 @@ public class TEAccount implements UniqueAccount {
 
     @Override
     public String getIdentifier() {
-        return uuid.toString();
+        return identifier;
     }
 
     @Override
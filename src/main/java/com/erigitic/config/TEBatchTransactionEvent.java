@@ -0,0 +1,72 @@
+/*
+ * This file is part of Total Economy, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Eric Grandt <https://www.ericgrandt.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.erigitic.config;
+
+import org.spongepowered.api.Sponge;
+import org.spongepowered.api.event.cause.Cause;
+import org.spongepowered.api.event.cause.NamedCause;
+import org.spongepowered.api.event.impl.AbstractEvent;
+import org.spongepowered.api.service.economy.transaction.TransactionResult;
+
+import java.util.List;
+
+/**
+ * Posted once after a TransactionBatch has been applied, instead of an EconomyTransactionEvent per operation. It is
+ * not an EconomyTransactionEvent, listeners that want to see batched changes such as salaries have to listen for this
+ * event as well.
+ */
+public class TEBatchTransactionEvent extends AbstractEvent {
+
+    private Cause cause;
+    private List<TransactionResult> transactionResults;
+
+    /**
+     * @param cause the cause the batch was applied with, or null to use Total Economy as the cause
+     * @param transactionResults the results of the operations in the batch
+     */
+    public TEBatchTransactionEvent(Cause cause, List<TransactionResult> transactionResults) {
+        this.cause = cause;
+        this.transactionResults = transactionResults;
+    }
+
+    @Override
+    public Cause getCause() {
+        if (cause != null) {
+            return cause;
+        }
+
+        return Cause.of(NamedCause.of("TotalEconomy", Sponge.getPluginManager().getPlugin("totaleconomy").get()));
+    }
+
+    /**
+     * Get the results of the operations in the batch, in the order they were added
+     *
+     * @return List<TransactionResult> the results
+     */
+    public List<TransactionResult> getTransactionResults() {
+        return transactionResults;
+    }
+}
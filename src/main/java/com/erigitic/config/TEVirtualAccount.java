@@ -26,7 +26,6 @@
 package com.erigitic.config;
 
 import com.erigitic.main.TotalEconomy;
-import ninja.leaping.configurate.ConfigurationNode;
 import org.spongepowered.api.event.cause.Cause;
 import org.spongepowered.api.service.context.Context;
 import org.spongepowered.api.service.economy.Currency;
@@ -46,14 +45,11 @@ public class TEVirtualAccount implements VirtualAccount {
     private AccountManager accountManager;
     private String identifier;
 
-    private ConfigurationNode accountConfig;
 
     public TEVirtualAccount(TotalEconomy totalEconomy, AccountManager accountManager, String identifier) {
         this.totalEconomy = totalEconomy;
         this.accountManager = accountManager;
         this.identifier = identifier;
-
-        accountConfig = accountManager.getAccountConfig();
     }
 
     @Override
@@ -68,27 +64,50 @@ public class TEVirtualAccount implements VirtualAccount {
 
     @Override
     public boolean hasBalance(Currency currency, Set<Context> contexts) {
-        String currencyName = currency.getDisplayName().toPlain().toLowerCase();
-
-        if (accountConfig.getNode(identifier, currencyName + "-balance").getValue() != null) {
-            return true;
-        }
-
-        return false;
+        return getRecord(currency) != null;
     }
 
     @Override
     public BigDecimal getBalance(Currency currency, Set<Context> contexts) {
-        if (hasBalance(currency, contexts)) {
-            String currencyName = currency.getDisplayName().toPlain().toLowerCase();
-            BigDecimal balance = new BigDecimal(accountConfig.getNode(identifier, currencyName + "-balance").getString());
+        AccountRecord record = getRecord(currency);
 
-            return balance;
+        if (record != null) {
+            return AccountRecord.fromMinorUnits(record.getBalance());
         }
 
         return BigDecimal.ZERO;
     }
 
+    /**
+     * Get the record holding this account's balance in the passed in currency. The account may have been evicted since
+     * this object was created, in which case it is read back in.
+     *
+     * @param currency the currency
+     * @return AccountRecord the record, or null if the account doesn't exist or has no balance in the currency
+     */
+    private AccountRecord getRecord(Currency currency) {
+        if (!currency.equals(accountManager.getDefaultCurrency())) {
+            return null;
+        }
+
+        return accountManager.getRecord(identifier);
+    }
+
+    /**
+     * Get and lock the record holding this account's balance in the passed in currency. The lock must be released once
+     * the change has been recorded.
+     *
+     * @param currency the currency
+     * @return AccountRecord the locked record, or null if the account doesn't exist or has no balance in the currency
+     */
+    private AccountRecord lockRecord(Currency currency) {
+        if (!currency.equals(accountManager.getDefaultCurrency())) {
+            return null;
+        }
+
+        return accountManager.lockRecord(identifier);
+    }
+
     @Override
     public Map<Currency, BigDecimal> getBalances(Set<Context> contexts) {
         return new HashMap<Currency, BigDecimal>();
@@ -96,21 +115,22 @@ public class TEVirtualAccount implements VirtualAccount {
 
     @Override
     public TransactionResult setBalance(Currency currency, BigDecimal amount, Cause cause, Set<Context> contexts) {
-        TransactionResult transactionResult;
-
-        if (hasBalance(currency, contexts)) {
-            String currencyName = currency.getDisplayName().toPlain().toLowerCase();
+        ResultType resultType = ResultType.FAILED;
+        AccountRecord record = lockRecord(currency);
 
-            accountConfig.getNode(identifier, currencyName + "-balance").setValue(amount.setScale(2, BigDecimal.ROUND_DOWN));
-            accountManager.saveAccountConfig();
+        if (record != null) {
+            try {
+                resultType = accountManager.applySet(record, amount);
 
-            transactionResult = new TETransactionResult(this, currency, amount, contexts, ResultType.SUCCESS, TransactionTypes.DEPOSIT);
-            totalEconomy.getGame().getEventManager().post(new TEEconomyTransactionEvent(transactionResult));
-
-            return transactionResult;
+                if (resultType == ResultType.SUCCESS) {
+                    accountManager.recordBalance(TransactionJournal.Operation.SET, record);
+                }
+            } finally {
+                record.unlock();
+            }
         }
 
-        transactionResult = new TETransactionResult(this, currency, amount, contexts, ResultType.FAILED, TransactionTypes.DEPOSIT);
+        TransactionResult transactionResult = new TETransactionResult(this, currency, amount, contexts, resultType, TransactionTypes.DEPOSIT);
         totalEconomy.getGame().getEventManager().post(new TEEconomyTransactionEvent(transactionResult));
 
         return transactionResult;
@@ -134,23 +154,24 @@ public class TEVirtualAccount implements VirtualAccount {
 
     @Override
     public TransactionResult deposit(Currency currency, BigDecimal amount, Cause cause, Set<Context> contexts) {
-        TransactionResult transactionResult;
-
-        if (hasBalance(currency, contexts)) {
-            String currencyName = currency.getDisplayName().toPlain().toLowerCase();
-            BigDecimal curBalance = getBalance(currency, contexts);
-            BigDecimal newBalance = curBalance.add(amount);
+        ResultType resultType = ResultType.FAILED;
+        AccountRecord record = lockRecord(currency);
 
-            accountConfig.getNode(identifier, currencyName + "-balance").setValue(newBalance.setScale(2, BigDecimal.ROUND_DOWN));
-            accountManager.saveAccountConfig();
+        if (record != null) {
+            try {
+                // Virtual accounts aren't bound by the money cap, and the stats only count income into player
+                // accounts so they stay consistent with the supply read from the player leaderboard
+                resultType = accountManager.applyDeposit(record, amount, false);
 
-            transactionResult = new TETransactionResult(this, currency, amount, contexts, ResultType.SUCCESS, TransactionTypes.DEPOSIT);
-            totalEconomy.getGame().getEventManager().post(new TEEconomyTransactionEvent(transactionResult));
-
-            return transactionResult;
+                if (resultType == ResultType.SUCCESS) {
+                    accountManager.recordBalance(TransactionJournal.Operation.DEPOSIT, record);
+                }
+            } finally {
+                record.unlock();
+            }
         }
 
-        transactionResult = new TETransactionResult(this, currency, amount, contexts, ResultType.FAILED, TransactionTypes.DEPOSIT);
+        TransactionResult transactionResult = new TETransactionResult(this, currency, amount, contexts, resultType, TransactionTypes.DEPOSIT);
         totalEconomy.getGame().getEventManager().post(new TEEconomyTransactionEvent(transactionResult));
 
         return transactionResult;
@@ -158,30 +179,22 @@ public class TEVirtualAccount implements VirtualAccount {
 
     @Override
     public TransactionResult withdraw(Currency currency, BigDecimal amount, Cause cause, Set<Context> contexts) {
-        TransactionResult transactionResult;
-
-        if (hasBalance(currency, contexts)) {
-            String currencyName = currency.getDisplayName().toPlain().toLowerCase();
-            BigDecimal curBalance =  getBalance(currency, contexts);
-            BigDecimal newBalance = curBalance.subtract(amount);
-
-            if (newBalance.compareTo(BigDecimal.ZERO) >= 0) {
-                accountConfig.getNode(identifier, currencyName + "-balance").setValue(newBalance.setScale(2, BigDecimal.ROUND_DOWN));
-                accountManager.saveAccountConfig();
+        ResultType resultType = ResultType.FAILED;
+        AccountRecord record = lockRecord(currency);
 
-                transactionResult = new TETransactionResult(this, currency, amount, contexts, ResultType.SUCCESS, TransactionTypes.WITHDRAW);
-                totalEconomy.getGame().getEventManager().post(new TEEconomyTransactionEvent(transactionResult));
+        if (record != null) {
+            try {
+                resultType = accountManager.applyWithdraw(record, amount);
 
-                return transactionResult;
-            } else {
-                transactionResult = new TETransactionResult(this, currency, amount, contexts, ResultType.ACCOUNT_NO_FUNDS, TransactionTypes.DEPOSIT);
-                totalEconomy.getGame().getEventManager().post(new TEEconomyTransactionEvent(transactionResult));
-
-                return transactionResult;
+                if (resultType == ResultType.SUCCESS) {
+                    accountManager.recordBalance(TransactionJournal.Operation.WITHDRAW, record);
+                }
+            } finally {
+                record.unlock();
             }
         }
 
-        transactionResult = new TETransactionResult(this, currency, amount, contexts, ResultType.FAILED, TransactionTypes.DEPOSIT);
+        TransactionResult transactionResult = new TETransactionResult(this, currency, amount, contexts, resultType, TransactionTypes.WITHDRAW);
         totalEconomy.getGame().getEventManager().post(new TEEconomyTransactionEvent(transactionResult));
 
         return transactionResult;
@@ -189,37 +202,9 @@ public class TEVirtualAccount implements VirtualAccount {
 
     @Override
     public TransferResult transfer(Account to, Currency currency, BigDecimal amount, Cause cause, Set<Context> contexts) {
-        TransferResult transferResult;
-
-        if (hasBalance(currency, contexts)) {
-            BigDecimal curBalance = getBalance(currency, contexts);
-            BigDecimal newBalance = curBalance.subtract(amount);
-
-            if (newBalance.compareTo(BigDecimal.ZERO) >= 0) {
-                withdraw(currency, amount, cause, contexts);
-
-                if (to.hasBalance(currency)) {
-                    to.deposit(currency, amount, cause, contexts);
-
-                    transferResult = new TETransferResult(this, to, currency, amount, contexts, ResultType.SUCCESS, TransactionTypes.TRANSFER);
-                    totalEconomy.getGame().getEventManager().post(new TEEconomyTransactionEvent(transferResult));
-
-                    return transferResult;
-                } else {
-                    transferResult = new TETransferResult(this, to, currency, amount, contexts, ResultType.FAILED, TransactionTypes.TRANSFER);
-                    totalEconomy.getGame().getEventManager().post(new TEEconomyTransactionEvent(transferResult));
-
-                    return transferResult;
-                }
-            } else {
-                transferResult = new TETransferResult(this, to, currency, amount, contexts, ResultType.ACCOUNT_NO_FUNDS, TransactionTypes.TRANSFER);
-                totalEconomy.getGame().getEventManager().post(new TEEconomyTransactionEvent(transferResult));
-
-                return transferResult;
-            }
-        }
+        ResultType resultType = accountManager.transfer(this, to, currency, amount, cause);
 
-        transferResult = new TETransferResult(this, to, currency, amount, contexts, ResultType.FAILED, TransactionTypes.TRANSFER);
+        TransferResult transferResult = new TETransferResult(this, to, currency, amount, contexts, resultType, TransactionTypes.TRANSFER);
         totalEconomy.getGame().getEventManager().post(new TEEconomyTransactionEvent(transferResult));
 
         return transferResult;
@@ -0,0 +1,136 @@
+/*
+ * This file is part of Total Economy, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Eric Grandt <https://www.ericgrandt.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.erigitic.config;
+
+import org.spongepowered.api.event.cause.Cause;
+import org.spongepowered.api.service.economy.account.Account;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A list of balance changes in the default currency that are applied together by AccountManager.applyBatch. Every
+ * account in the batch is locked once, the changes are journaled as a single record and one TEBatchTransactionEvent is
+ * posted for the whole batch. Operations are applied in the order they were added and succeed or fail on their own.
+ */
+public class TransactionBatch {
+
+    public enum Type {
+        DEPOSIT, WITHDRAW, TRANSFER, SET
+    }
+
+    private List<Entry> entries = new ArrayList<>();
+    private Cause cause;
+
+    public TransactionBatch() {
+
+    }
+
+    /**
+     * @param cause the cause of the changes, may name an {@link IncomeSource}
+     */
+    public TransactionBatch(Cause cause) {
+        this.cause = cause;
+    }
+
+    public TransactionBatch deposit(Account account, BigDecimal amount) {
+        entries.add(new Entry(Type.DEPOSIT, account, null, amount));
+
+        return this;
+    }
+
+    public TransactionBatch withdraw(Account account, BigDecimal amount) {
+        entries.add(new Entry(Type.WITHDRAW, account, null, amount));
+
+        return this;
+    }
+
+    public TransactionBatch transfer(Account from, Account to, BigDecimal amount) {
+        entries.add(new Entry(Type.TRANSFER, from, to, amount));
+
+        return this;
+    }
+
+    public TransactionBatch setBalance(Account account, BigDecimal amount) {
+        entries.add(new Entry(Type.SET, account, null, amount));
+
+        return this;
+    }
+
+    /**
+     * Get the cause of the changes
+     *
+     * @return Cause the cause, or null if none was given
+     */
+    public Cause getCause() {
+        return cause;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public List<Entry> getEntries() {
+        return Collections.unmodifiableList(entries);
+    }
+
+    public static class Entry {
+        private final Type type;
+        private final Account account;
+        private final Account to;
+        private final BigDecimal amount;
+
+        private Entry(Type type, Account account, Account to, BigDecimal amount) {
+            this.type = type;
+            this.account = account;
+            this.to = to;
+            this.amount = amount;
+        }
+
+        public Type getType() {
+            return type;
+        }
+
+        public Account getAccount() {
+            return account;
+        }
+
+        /**
+         * Get the account that receives the amount of a transfer
+         *
+         * @return Account the receiving account, or null if the operation is not a transfer
+         */
+        public Account getTo() {
+            return to;
+        }
+
+        public BigDecimal getAmount() {
+            return amount;
+        }
+    }
+}
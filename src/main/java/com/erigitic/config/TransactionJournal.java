@@ -0,0 +1,362 @@
+/*
+ * This file is part of Total Economy, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Eric Grandt <https://www.ericgrandt.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.erigitic.config;
+
+import ninja.leaping.configurate.ConfigurationNode;
+import org.slf4j.Logger;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only binary journal of balance changes. Every record holds the balance an account was left with after the
+ * transaction, so replaying the journal on top of the last saved accounts file restores any changes that were not
+ * written before a crash. The journal is rotated into a numbered segment at the start of every save and the segments
+ * are deleted once the save succeeds.
+ *
+ * Record layout: [int length][int crc32][byte operation][long timestamp][short entries]
+ * followed by entries of [UTF identifier][UTF currency][int scale][short length][unscaled bytes].
+ */
+public class TransactionJournal {
+    private static final String FILE_NAME = "accounts.journal";
+    private static final int MAGIC = 0x54454a4c;
+    private static final int VERSION = 1;
+
+    // Upper bound for the length of a single record. Far above anything a batch can produce, a longer length can only
+    // come from a damaged file.
+    private static final int MAX_RECORD_LENGTH = 16 * 1024 * 1024;
+
+    public enum Operation {
+        DEPOSIT, WITHDRAW, TRANSFER, SET, BATCH
+    }
+
+    private Logger logger;
+    private File directory;
+    private File journalFile;
+    private boolean sync;
+
+    private FileOutputStream fileOut;
+    private DataOutputStream out;
+    private long segment = 0;
+
+    /**
+     * @param directory the directory the journal files are kept in
+     * @param logger the plugin logger
+     * @param sync whether or not every record should be forced to disk before returning
+     */
+    public TransactionJournal(File directory, Logger logger, boolean sync) {
+        this.directory = directory;
+        this.logger = logger;
+        this.sync = sync;
+
+        journalFile = new File(directory, FILE_NAME);
+    }
+
+    /**
+     * Open the active journal file for appending, creating it if needed
+     *
+     * @throws IOException if the journal could not be opened
+     */
+    public synchronized void open() throws IOException {
+        for (File segmentFile : getSegmentFiles()) {
+            segment = Math.max(segment, getSegmentNumber(segmentFile));
+        }
+
+        boolean isNew = !journalFile.exists() || journalFile.length() == 0;
+
+        fileOut = new FileOutputStream(journalFile, true);
+        out = new DataOutputStream(new BufferedOutputStream(fileOut));
+
+        if (isNew) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.flush();
+        }
+    }
+
+    /**
+     * Close the active journal file
+     */
+    public synchronized void close() {
+        if (out != null) {
+            try {
+                out.close();
+            } catch (IOException e) {
+                logger.warn("Could not close the transaction journal!");
+            }
+
+            out = null;
+            fileOut = null;
+        }
+    }
+
+    /**
+     * Append a balance change for a single account. The record is encoded on the calling thread, only writing it to
+     * the file is done one thread at a time.
+     *
+     * @param operation the operation that changed the balance
+     * @param identifier the identifier of the account
+     * @param currencyName the lowercase name of the currency
+     * @param balance the balance of the account after the change, in minor units
+     */
+    public void append(Operation operation, String identifier, String currencyName, long balance) {
+        try {
+            ByteArrayOutputStream recordBuffer = new ByteArrayOutputStream(128);
+            DataOutputStream recordOut = beginRecord(recordBuffer, operation, 1);
+
+            writeEntry(recordOut, identifier, currencyName, balance);
+            writeRecord(recordBuffer);
+        } catch (IOException e) {
+            logger.error("Could not write to the transaction journal!");
+        }
+    }
+
+    /**
+     * Append a balance change that affected several accounts as a single record, so either all or none of the balances
+     * are replayed
+     *
+     * @param operation the operation that changed the balances
+     * @param currencyName the lowercase name of the currency
+     * @param records the records of the accounts after the change
+     */
+    public void append(Operation operation, String currencyName, Collection<AccountRecord> records) {
+        try {
+            ByteArrayOutputStream recordBuffer = new ByteArrayOutputStream(128);
+            DataOutputStream recordOut = beginRecord(recordBuffer, operation, records.size());
+
+            for (AccountRecord record : records) {
+                writeEntry(recordOut, record.getIdentifier(), currencyName, record.getBalance());
+            }
+
+            writeRecord(recordBuffer);
+        } catch (IOException e) {
+            logger.error("Could not write to the transaction journal!");
+        }
+    }
+
+    private DataOutputStream beginRecord(ByteArrayOutputStream recordBuffer, Operation operation, int entries) throws IOException {
+        DataOutputStream recordOut = new DataOutputStream(recordBuffer);
+
+        recordOut.writeByte(operation.ordinal());
+        recordOut.writeLong(System.currentTimeMillis());
+        recordOut.writeShort(entries);
+
+        return recordOut;
+    }
+
+    private void writeEntry(DataOutputStream recordOut, String identifier, String currencyName, long balance) throws IOException {
+        // Written as an 8 byte unscaled value so the record layout stays the same as for any other BigDecimal
+        recordOut.writeUTF(identifier);
+        recordOut.writeUTF(currencyName);
+        recordOut.writeInt(AccountRecord.SCALE);
+        recordOut.writeShort(8);
+        recordOut.writeLong(balance);
+    }
+
+    private void writeRecord(ByteArrayOutputStream recordBuffer) throws IOException {
+        byte[] record = recordBuffer.toByteArray();
+        CRC32 crc = new CRC32();
+
+        crc.update(record, 0, record.length);
+
+        writeRecord(record, (int) crc.getValue());
+    }
+
+    private synchronized void writeRecord(byte[] record, int checksum) throws IOException {
+        if (out == null) {
+            throw new IOException("Journal is not open");
+        }
+
+        out.writeInt(record.length);
+        out.writeInt(checksum);
+        out.write(record);
+        out.flush();
+
+        if (sync) {
+            fileOut.getFD().sync();
+        }
+    }
+
+    /**
+     * Move the active journal into a new numbered segment and start a fresh journal. Called before the accounts are
+     * saved so that everything in the returned segment (and older ones) is covered by that save.
+     *
+     * @return long the number of the newest segment, everything up to it is covered by the save
+     */
+    public synchronized long rotate() {
+        if (out == null || journalFile.length() <= 8) {
+            return segment;
+        }
+
+        close();
+
+        File segmentFile = new File(directory, FILE_NAME + "." + (segment + 1));
+
+        if (journalFile.renameTo(segmentFile)) {
+            segment++;
+        } else {
+            logger.warn("Could not rotate the transaction journal!");
+        }
+
+        try {
+            open();
+        } catch (IOException e) {
+            logger.error("Could not reopen the transaction journal!");
+        }
+
+        return segment;
+    }
+
+    /**
+     * Delete all segments up to and including the passed in segment. Called once the accounts have been saved.
+     *
+     * @param upTo the last segment covered by the save
+     */
+    public synchronized void compact(long upTo) {
+        for (File segmentFile : getSegmentFiles()) {
+            if (getSegmentNumber(segmentFile) <= upTo && !segmentFile.delete()) {
+                logger.warn("Could not delete journal segment " + segmentFile.getName());
+            }
+        }
+    }
+
+    /**
+     * Replay every segment and then the active journal into an account tree. Only the last balance of each account is
+     * kept. Replay stops at the first record that is truncated or fails its checksum, which is where the server went
+     * down.
+     *
+     * @param accountConfig the tree the recovered balances are written to
+     * @return Set<String> identifiers of the accounts that were changed by the replay
+     */
+    public synchronized Set<String> replay(ConfigurationNode accountConfig) {
+        Set<String> replayed = new HashSet<>();
+
+        List<File> files = getSegmentFiles();
+        files.add(journalFile);
+
+        for (File file : files) {
+            if (file.exists()) {
+                replayFile(file, accountConfig, replayed);
+            }
+        }
+
+        return replayed;
+    }
+
+    private void replayFile(File file, ConfigurationNode accountConfig, Set<String> replayed) {
+        CRC32 crc = new CRC32();
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                logger.warn("Skipping unrecognized journal file " + file.getName());
+                return;
+            }
+
+            long remaining = file.length() - 8;
+
+            while (true) {
+                int length;
+
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+
+                int checksum = in.readInt();
+                remaining -= 8;
+
+                // A length that doesn't fit in the rest of the file is a torn or damaged tail, don't trust it
+                if (length < 0 || length > remaining || length > MAX_RECORD_LENGTH) {
+                    logger.warn("Journal " + file.getName() + " has a record with an invalid length, stopping replay of that file.");
+                    break;
+                }
+
+                byte[] record = new byte[length];
+                in.readFully(record);
+                remaining -= length;
+
+                crc.reset();
+                crc.update(record, 0, length);
+
+                if ((int) crc.getValue() != checksum) {
+                    logger.warn("Journal " + file.getName() + " has a corrupt record, stopping replay of that file.");
+                    break;
+                }
+
+                DataInputStream recordIn = new DataInputStream(new ByteArrayInputStream(record));
+                recordIn.readByte();
+                recordIn.readLong();
+                int entries = recordIn.readShort();
+
+                for (int i = 0; i < entries; i++) {
+                    String identifier = recordIn.readUTF();
+                    String currencyName = recordIn.readUTF();
+                    int scale = recordIn.readInt();
+                    byte[] unscaled = new byte[recordIn.readShort()];
+                    recordIn.readFully(unscaled);
+
+                    accountConfig.getNode(identifier, currencyName + "-balance").setValue(new BigDecimal(new BigInteger(unscaled), scale));
+                    replayed.add(identifier);
+                }
+            }
+        } catch (EOFException e) {
+            logger.warn("Journal " + file.getName() + " ends with a partial record, it was ignored.");
+        } catch (IOException e) {
+            logger.error("Could not read journal " + file.getName() + "!");
+        }
+    }
+
+    private List<File> getSegmentFiles() {
+        List<File> segmentFiles = new ArrayList<>();
+        File[] files = directory.listFiles((dir, name) -> name.startsWith(FILE_NAME + "."));
+
+        if (files != null) {
+            Collections.addAll(segmentFiles, files);
+        }
+
+        segmentFiles.removeIf(file -> getSegmentNumber(file) < 0);
+        segmentFiles.sort((a, b) -> Long.compare(getSegmentNumber(a), getSegmentNumber(b)));
+
+        return segmentFiles;
+    }
+
+    private long getSegmentNumber(File segmentFile) {
+        try {
+            return Long.parseLong(segmentFile.getName().substring(FILE_NAME.length() + 1));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
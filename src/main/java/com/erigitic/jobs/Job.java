@@ -25,8 +25,129 @@
 
 package com.erigitic.jobs;
 
-import ninja.leaping.configurate.ConfigurationNode;
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 
-public interface Job {
-    void setupJobValues(ConfigurationNode jobsConfig);
+/**
+ * A job defined in jobs.conf or registered by another plugin. Jobs are built when jobs.conf is loaded and never change
+ * afterwards; reloading the config builds new ones.
+ */
+public final class Job {
+    private final int id;
+    private final String name;
+    private final String permission;
+    private final BigDecimal salary;
+    private final Map<JobAction, Map<String, JobReward>> rewards;
+
+    /**
+     * @param id the index of the job in the job table
+     * @param name the name of the job as written in jobs.conf
+     * @param permission the permission needed to take the job when job permissions are enabled
+     * @param salary the salary of the job, or null if it has none
+     * @param rewards the rewards of the job by action and target
+     */
+    public Job(int id, String name, String permission, BigDecimal salary, Map<JobAction, Map<String, JobReward>> rewards) {
+        this.id = id;
+        this.name = name;
+        this.permission = permission;
+        this.salary = salary;
+        this.rewards = rewards;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getPermission() {
+        return permission;
+    }
+
+    /**
+     * Get the salary paid to players with this job
+     *
+     * @return Optional<BigDecimal> the salary, empty if the job has none or it is disabled
+     */
+    public Optional<BigDecimal> getSalary() {
+        return Optional.ofNullable(salary);
+    }
+
+    /**
+     * Get the reward for an action
+     *
+     * @param action what the player did
+     * @param target the block id, entity type name or fish name the action was done to
+     * @return JobReward the reward, or null if the job doesn't reward it
+     */
+    public JobReward getReward(JobAction action, String target) {
+        Map<String, JobReward> actionRewards = rewards.get(action);
+
+        if (actionRewards == null) {
+            return null;
+        }
+
+        JobReward reward = actionRewards.get(target);
+        String blockName = getBlockName(action, target);
+
+        // Fall back to a block name without a namespace, which matches the block from any mod
+        if (reward == null && blockName != null) {
+            reward = actionRewards.get(blockName);
+        }
+
+        return reward;
+    }
+
+    /**
+     * Get the name of a block without its namespace, which is how blocks of any mod can be named in jobs.conf
+     *
+     * @param action what the player did
+     * @param target the target of the action
+     * @return String the block name, or null if the target isn't a block id with a namespace
+     */
+    static String getBlockName(JobAction action, String target) {
+        int separator = target.indexOf(':');
+
+        if ((action != JobAction.BREAK && action != JobAction.PLACE) || separator < 0) {
+            return null;
+        }
+
+        return target.substring(separator + 1);
+    }
+
+    /**
+     * Check if the job rewards an action at all
+     *
+     * @param action the action
+     * @return boolean whether or not anything is rewarded for the action
+     */
+    public boolean hasRewards(JobAction action) {
+        return rewards.containsKey(action);
+    }
+
+    /**
+     * Get the actions the job rewards
+     *
+     * @return Set<JobAction> the actions
+     */
+    public Set<JobAction> getActions() {
+        return Collections.unmodifiableSet(rewards.keySet());
+    }
+
+    /**
+     * Get every reward for an action
+     *
+     * @param action the action
+     * @return Map the rewards by target
+     */
+    public Map<String, JobReward> getRewards(JobAction action) {
+        Map<String, JobReward> actionRewards = rewards.get(action);
+
+        return actionRewards != null ? actionRewards : Collections.emptyMap();
+    }
 }
@@ -23,22 +23,38 @@
  * SOFTWARE.
  */
 
-package com.erigitic.jobs.jobs;
+package com.erigitic.jobs;
 
-import com.erigitic.jobs.Job;
-import ninja.leaping.configurate.ConfigurationNode;
+/**
+ * Something a job can reward, stored under its own node in a job's section of jobs.conf. Total Economy rewards the
+ * break, place, kill and catch actions itself; other plugins can add their own actions, such as craft or smelt,
+ * through the JobService and report them when they happen.
+ *
+ * Actions are compared by identity, there is only ever one action per node name.
+ */
+public final class JobAction {
+    public static final JobAction BREAK = new JobAction("break");
+    public static final JobAction PLACE = new JobAction("place");
+    public static final JobAction KILL = new JobAction("kill");
+    public static final JobAction CATCH = new JobAction("catch");
 
-public class FishermanJob implements Job {
-    public void setupJobValues(ConfigurationNode jobsConfig) {
-        String[][] catchValues = {{"cod", "25", "50.00"}, {"salmon", "100", "150.00"}, {"pufferfish", "250", "300.00"}};
+    private final String nodeName;
 
-        for (int i = 0; i < catchValues.length; i++) {
-            jobsConfig.getNode("Fisherman", "catch", catchValues[i][0], "expreward").setValue(catchValues[i][1]);
-            jobsConfig.getNode("Fisherman", "catch", catchValues[i][0], "pay").setValue(catchValues[i][2]);
-        }
+    JobAction(String nodeName) {
+        this.nodeName = nodeName;
+    }
+
+    /**
+     * Get the name of the node in jobs.conf that holds the rewards for this action
+     *
+     * @return String the node name
+     */
+    public String getNodeName() {
+        return nodeName;
+    }
 
-        jobsConfig.getNode("Fisherman", "disablesalary").setValue(false);
-        jobsConfig.getNode("Fisherman", "salary").setValue(20);
-        jobsConfig.getNode("Fisherman", "permission").setValue("totaleconomy.job.fisherman");
+    @Override
+    public String toString() {
+        return nodeName;
     }
 }
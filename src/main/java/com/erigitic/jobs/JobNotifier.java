@@ -0,0 +1,142 @@
+/*
+ * This file is part of Total Economy, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Eric Grandt <https://www.ericgrandt.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.erigitic.jobs;
+
+import com.erigitic.config.AccountManager;
+import com.erigitic.config.AccountRecord;
+import com.erigitic.config.NotificationMode;
+import com.erigitic.main.TotalEconomy;
+import org.spongepowered.api.entity.living.player.Player;
+import org.spongepowered.api.text.Text;
+import org.spongepowered.api.text.chat.ChatTypes;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Sums the job rewards paid to each player and tells them about it with a single summary every notification interval,
+ * in chat or on the action bar depending on the mode stored on their account.
+ *
+ * Rewards are added and sent from the server thread only.
+ */
+public class JobNotifier {
+    private TotalEconomy totalEconomy;
+    private AccountManager accountManager;
+
+    private final JobRewardAccumulator pending = new JobRewardAccumulator();
+
+    public JobNotifier(TotalEconomy totalEconomy) {
+        this.totalEconomy = totalEconomy;
+
+        accountManager = totalEconomy.getAccountManager();
+    }
+
+    /**
+     * Start the timer that sends the summaries, every notification interval in ticks. With an interval of 0 every
+     * payout is sent right away.
+     */
+    public void start() {
+        int interval = totalEconomy.getJobNotificationInterval();
+
+        if (interval > 0) {
+            totalEconomy.getGame().getScheduler().createTaskBuilder().execute(() -> flush())
+                    .delayTicks(interval).intervalTicks(interval).name("Total Economy - Job Notifications").submit(totalEconomy);
+        }
+    }
+
+    /**
+     * Add a reward that was paid to a player to their next summary
+     *
+     * @param uuid the player's UUID
+     * @param record the player's account record
+     * @param jobName the job the reward was earned in
+     * @param reward the reward
+     */
+    public void add(UUID uuid, AccountRecord record, String jobName, JobReward reward) {
+        if (record.getNotificationMode() == NotificationMode.OFF) {
+            return;
+        }
+
+        pending.add(uuid, jobName, reward);
+
+        if (totalEconomy.getJobNotificationInterval() <= 0) {
+            flush(uuid);
+        }
+    }
+
+    /**
+     * Send every player the summary of the rewards they were paid since the last one
+     */
+    public void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        for (Map.Entry<UUID, JobRewardAccumulator.PendingReward> entry : pending.drain().entrySet()) {
+            notify(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Send a player the summary of the rewards they were paid since the last one
+     *
+     * @param uuid the player's UUID
+     */
+    public void flush(UUID uuid) {
+        JobRewardAccumulator.PendingReward pendingReward = pending.remove(uuid);
+
+        if (pendingReward != null) {
+            notify(uuid, pendingReward);
+        }
+    }
+
+    private void notify(UUID uuid, JobRewardAccumulator.PendingReward pendingReward) {
+        Optional<Player> player = totalEconomy.getServer().getPlayer(uuid);
+        AccountRecord record = accountManager.getRecord(uuid);
+
+        if (player.isPresent() && record != null) {
+            Text notification = pendingReward.toReward(accountManager.getDefaultCurrency().getSymbol()).getNotification();
+
+            send(player.get(), record.getNotificationMode(), notification);
+        }
+    }
+
+    /**
+     * Send a player a job message the way their notification mode asks for
+     *
+     * @param player the player
+     * @param mode the player's notification mode
+     * @param message the message
+     */
+    public static void send(Player player, NotificationMode mode, Text message) {
+        if (mode == NotificationMode.CHAT) {
+            player.sendMessage(message);
+        } else if (mode == NotificationMode.ACTIONBAR) {
+            player.sendMessage(ChatTypes.ACTION_BAR, message);
+        }
+    }
+}
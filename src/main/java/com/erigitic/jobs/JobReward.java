@@ -0,0 +1,84 @@
+/*
+ * This file is part of Total Economy, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Eric Grandt <https://www.ericgrandt.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.erigitic.jobs;
+
+import com.erigitic.config.AccountRecord;
+import org.spongepowered.api.text.Text;
+import org.spongepowered.api.text.format.TextColors;
+
+import java.math.BigDecimal;
+
+/**
+ * The exp and pay for a single job action, parsed once when jobs.conf is loaded. The notification is built up front so
+ * rewarding a player for a single action doesn't create any new Text.
+ */
+public final class JobReward {
+    private final int exp;
+    private final long pay;
+    private final BigDecimal payAmount;
+    private final Text notification;
+
+    /**
+     * @param jobName the name of the job the reward belongs to
+     * @param exp the exp rewarded
+     * @param payAmount the money rewarded
+     * @param currencySymbol the symbol of the default currency
+     */
+    public JobReward(String jobName, int exp, BigDecimal payAmount, Text currencySymbol) {
+        this.exp = exp;
+        this.payAmount = payAmount.setScale(AccountRecord.SCALE, BigDecimal.ROUND_DOWN);
+
+        pay = AccountRecord.toMinorUnits(this.payAmount);
+        notification = Text.of(TextColors.GOLD, "+", currencySymbol, this.payAmount, TextColors.GRAY, " | ", TextColors.GOLD,
+                "+", exp, TextColors.GRAY, " ", jobName, " exp");
+    }
+
+    public int getExp() {
+        return exp;
+    }
+
+    /**
+     * Get the money rewarded in minor units of the default currency
+     *
+     * @return long the pay
+     */
+    public long getPay() {
+        return pay;
+    }
+
+    public BigDecimal getPayAmount() {
+        return payAmount;
+    }
+
+    /**
+     * Get the summary of the reward shown to the player
+     *
+     * @return Text the pay and exp of the reward
+     */
+    public Text getNotification() {
+        return notification;
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * This file is part of Total Economy, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Eric Grandt <https://www.ericgrandt.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.erigitic.jobs;
+
+import com.erigitic.config.AccountRecord;
+import org.spongepowered.api.text.Text;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Collects the job rewards each player earns between payouts, so a player breaking several blocks a second is paid
+ * once per payout with one deposit and one exp gain instead of once per block.
+ *
+ * Rewards are added and drained from the server thread only.
+ */
+public class JobRewardAccumulator {
+    private Map<UUID, PendingReward> pending = new HashMap<>();
+
+    /**
+     * Add a reward to a player's pending rewards
+     *
+     * @param uuid the player's UUID
+     * @param jobName the job the reward was earned in
+     * @param reward the reward
+     */
+    public void add(UUID uuid, String jobName, JobReward reward) {
+        PendingReward pendingReward = pending.get(uuid);
+
+        if (pendingReward == null) {
+            pending.put(uuid, new PendingReward(jobName, reward));
+        } else {
+            pendingReward.add(reward);
+        }
+    }
+
+    /**
+     * Remove a player's pending rewards
+     *
+     * @param uuid the player's UUID
+     * @return PendingReward the rewards the player has not been paid yet, or null if there are none
+     */
+    public PendingReward remove(UUID uuid) {
+        return pending.remove(uuid);
+    }
+
+    /**
+     * Remove the pending rewards of every player
+     *
+     * @return Map the rewards each player has not been paid yet
+     */
+    public Map<UUID, PendingReward> drain() {
+        Map<UUID, PendingReward> drained = pending;
+
+        pending = new HashMap<>();
+
+        return drained;
+    }
+
+    public boolean isEmpty() {
+        return pending.isEmpty();
+    }
+
+    /**
+     * The rewards a player has earned in one job since they were last paid
+     */
+    public static final class PendingReward {
+        private final String jobName;
+        private final JobReward firstReward;
+        private int count = 1;
+        private int exp;
+        private long pay;
+
+        private PendingReward(String jobName, JobReward reward) {
+            this.jobName = jobName;
+
+            firstReward = reward;
+            exp = reward.getExp();
+            pay = reward.getPay();
+        }
+
+        private void add(JobReward reward) {
+            count++;
+            exp += reward.getExp();
+            pay += reward.getPay();
+        }
+
+        public String getJobName() {
+            return jobName;
+        }
+
+        /**
+         * Combine the pending rewards into one reward. A single reward is returned as is so its notifications don't
+         * have to be built again.
+         *
+         * @param currencySymbol the symbol of the default currency
+         * @return JobReward the combined reward
+         */
+        public JobReward toReward(Text currencySymbol) {
+            if (count == 1) {
+                return firstReward;
+            }
+
+            return new JobReward(jobName, exp, AccountRecord.fromMinorUnits(pay), currencySymbol);
+        }
+    }
+}
@@ -0,0 +1,229 @@
+/*
+ * This file is part of Total Economy, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Eric Grandt <https://www.ericgrandt.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.erigitic.jobs;
+
+import ninja.leaping.configurate.ConfigurationNode;
+import org.slf4j.Logger;
+import org.spongepowered.api.text.Text;
+
+import java.math.BigDecimal;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Every job defined in jobs.conf or registered by another plugin, compiled so an event only needs a couple of map
+ * lookups to find the reward for what a player did. The table is never changed after it is built; reloading jobs.conf
+ * or registering a job or action builds a new one.
+ *
+ * Each section of jobs.conf is a job, holding its salary, permission and a node per action with the rewarded targets.
+ * Jobs are numbered in the order they are read. Block rewards are keyed by the block id as written in jobs.conf. A block
+ * name without a namespace, such as coal_ore, matches the block with that name from any mod, a full id such as
+ * minecraft:coal_ore only matches that block. Entities and fish are keyed by the name Sponge gives their type.
+ */
+public final class JobRewardTable {
+    private static final Set<String> JOB_SETTINGS = new HashSet<>(Arrays.asList("salary", "disablesalary", "permission"));
+
+    private final Job[] jobs;
+    private final Map<String, Job> jobsByName;
+    private final Map<JobAction, Set<String>> targets;
+    private final Set<String> unknownActions;
+
+    private JobRewardTable(Job[] jobs, Map<JobAction, Set<String>> targets, Set<String> unknownActions) {
+        this.jobs = jobs;
+        this.targets = targets;
+        this.unknownActions = unknownActions;
+
+        jobsByName = new HashMap<>();
+
+        for (Job job : jobs) {
+            jobsByName.put(job.getName().toLowerCase(), job);
+        }
+    }
+
+    /**
+     * Build the table from the jobs config and the jobs registered by other plugins
+     *
+     * @param jobsConfig the root of jobs.conf
+     * @param registeredJobs the definitions of the jobs registered by other plugins, by name. Jobs in jobs.conf replace
+     *                       registered jobs with the same name.
+     * @param actions the actions jobs can reward, by node name
+     * @param currencySymbol the symbol of the default currency, used in the notifications
+     * @param logger the plugin logger
+     * @return JobRewardTable the compiled jobs
+     */
+    public static JobRewardTable compile(ConfigurationNode jobsConfig, Map<String, ConfigurationNode> registeredJobs,
+                                         Map<String, JobAction> actions, Text currencySymbol, Logger logger) {
+        Map<String, Map.Entry<String, ConfigurationNode>> definitions = new LinkedHashMap<>();
+        List<Job> jobs = new ArrayList<>();
+        Map<JobAction, Set<String>> targets = new HashMap<>();
+        Set<String> unknownActions = new HashSet<>();
+
+        for (Map.Entry<Object, ? extends ConfigurationNode> jobEntry : jobsConfig.getChildrenMap().entrySet()) {
+            // Skips the settings that aren't jobs, such as salarydelay
+            if (jobEntry.getValue().hasMapChildren()) {
+                String jobName = jobEntry.getKey().toString();
+
+                definitions.put(jobName.toLowerCase(), new AbstractMap.SimpleImmutableEntry<>(jobName, jobEntry.getValue()));
+            }
+        }
+
+        for (Map.Entry<String, ConfigurationNode> jobEntry : registeredJobs.entrySet()) {
+            definitions.putIfAbsent(jobEntry.getKey().toLowerCase(), jobEntry);
+        }
+
+        for (Map.Entry<String, ConfigurationNode> definition : definitions.values()) {
+            String jobName = definition.getKey();
+            ConfigurationNode jobNode = definition.getValue();
+            Map<JobAction, Map<String, JobReward>> jobRewards = new HashMap<>();
+
+            for (Map.Entry<Object, ? extends ConfigurationNode> actionEntry : jobNode.getChildrenMap().entrySet()) {
+                String actionName = actionEntry.getKey().toString();
+                JobAction action = actions.get(actionName);
+
+                if (action == null) {
+                    if (!JOB_SETTINGS.contains(actionName)) {
+                        unknownActions.add(actionName);
+                    }
+
+                    continue;
+                }
+
+                Map<String, JobReward> actionRewards = compileRewards(jobName, action, actionEntry.getValue(), currencySymbol, logger);
+
+                if (!actionRewards.isEmpty()) {
+                    jobRewards.put(action, Collections.unmodifiableMap(actionRewards));
+                    targets.computeIfAbsent(action, key -> new HashSet<>()).addAll(actionRewards.keySet());
+                }
+            }
+
+            BigDecimal salary = null;
+            String salaryValue = jobNode.getNode("salary").getString(null);
+
+            // A job without a salary node has no salary, rather than a salary of nothing
+            if (salaryValue != null && !jobNode.getNode("disablesalary").getBoolean()) {
+                try {
+                    salary = new BigDecimal(salaryValue);
+                } catch (NumberFormatException e) {
+                    logger.warn("Invalid salary for the " + jobName + " job, it will not be paid.");
+                }
+            }
+
+            // Defaults to the node jobs have always used, so servers with job permissions keep working
+            String permission = jobNode.getNode("permission").getString("main.job." + jobName.toLowerCase());
+
+            jobs.add(new Job(jobs.size(), jobName, permission, salary, Collections.unmodifiableMap(jobRewards)));
+        }
+
+        return new JobRewardTable(jobs.toArray(new Job[jobs.size()]), targets, Collections.unmodifiableSet(unknownActions));
+    }
+
+    private static Map<String, JobReward> compileRewards(String jobName, JobAction action, ConfigurationNode actionNode,
+                                                         Text currencySymbol, Logger logger) {
+        Map<String, JobReward> actionRewards = new HashMap<>();
+
+        for (Map.Entry<Object, ? extends ConfigurationNode> targetEntry : actionNode.getChildrenMap().entrySet()) {
+            String target = targetEntry.getKey().toString();
+            ConfigurationNode targetNode = targetEntry.getValue();
+
+            try {
+                JobReward reward = new JobReward(jobName, targetNode.getNode("expreward").getInt(),
+                        new BigDecimal(targetNode.getNode("pay").getString("0")), currencySymbol);
+
+                actionRewards.put(target, reward);
+            } catch (NumberFormatException | ArithmeticException e) {
+                logger.warn("Invalid pay for " + target + " in the " + jobName + " job, it will not be rewarded.");
+            }
+        }
+
+        return actionRewards;
+    }
+
+    /**
+     * Get a job by its id
+     *
+     * @param id the id of the job
+     * @return Job the job, or null if there is no job with the id
+     */
+    public Job getJob(int id) {
+        return id >= 0 && id < jobs.length ? jobs[id] : null;
+    }
+
+    /**
+     * Get a job by its name, ignoring case
+     *
+     * @param jobName the name of the job
+     * @return Job the job, or null if there is no job with the name
+     */
+    public Job getJob(String jobName) {
+        return jobName != null ? jobsByName.get(jobName.toLowerCase()) : null;
+    }
+
+    /**
+     * Get every job in the order of their ids
+     *
+     * @return List<Job> the jobs
+     */
+    public List<Job> getJobs() {
+        return Collections.unmodifiableList(Arrays.asList(jobs));
+    }
+
+    /**
+     * Check if any job rewards an action done to a target
+     *
+     * @param action the action
+     * @param target the block id, entity type name or fish name
+     * @return boolean whether or not at least one job rewards it
+     */
+    public boolean isRewarded(JobAction action, String target) {
+        Set<String> actionTargets = targets.get(action);
+
+        if (actionTargets == null) {
+            return false;
+        }
+
+        String blockName = Job.getBlockName(action, target);
+
+        return actionTargets.contains(target) || (blockName != null && actionTargets.contains(blockName));
+    }
+
+    /**
+     * Get the action nodes found in jobs that aren't a registered action. They may belong to a plugin that hasn't
+     * registered its actions yet.
+     *
+     * @return Set<String> the names of the unknown actions
+     */
+    public Set<String> getUnknownActions() {
+        return unknownActions;
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * This file is part of Total Economy, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Eric Grandt <https://www.ericgrandt.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.erigitic.jobs;
+
+import ninja.leaping.configurate.ConfigurationNode;
+import org.spongepowered.api.entity.living.player.Player;
+
+import java.util.Collection;
+import java.util.Optional;
+
+/**
+ * Lets other plugins add jobs and actions to Total Economy's jobs. Get it from the service manager when jobs are
+ * enabled.
+ *
+ * A plugin adding an action (for example craft, smelt, breed or enchant) listens to the events for it and reports
+ * each one with {@link #reward}. The rewards are looked up in the same compiled job table and paid out with the same
+ * batched payouts and notifications as the built in actions, so no second jobs plugin has to handle the same events.
+ *
+ * All methods must be called from the server thread.
+ */
+public interface JobService {
+
+    /**
+     * Register an action that jobs can reward. Jobs in jobs.conf and registered jobs reward it under a node with the
+     * action's name.
+     *
+     * @param plugin the plugin adding the action
+     * @param nodeName the name of the action, such as craft
+     * @return JobAction the action, the existing one if an action with the name is already registered
+     */
+    JobAction registerAction(Object plugin, String nodeName);
+
+    /**
+     * Get a registered action by its name
+     *
+     * @param nodeName the name of the action
+     * @return Optional<JobAction> the action, empty if no action with the name is registered
+     */
+    Optional<JobAction> getAction(String nodeName);
+
+    /**
+     * Register a job. The definition has the same layout as a job's section in jobs.conf (salary, disablesalary,
+     * permission and a node per action holding the rewarded targets with their expreward and pay). A job with the same
+     * name in jobs.conf replaces it, so server owners can still change the rewards.
+     *
+     * @param plugin the plugin adding the job
+     * @param jobName the name of the job
+     * @param definition the job definition
+     */
+    void registerJob(Object plugin, String jobName, ConfigurationNode definition);
+
+    /**
+     * Get a job by its name, ignoring case
+     *
+     * @param jobName the name of the job
+     * @return Optional<Job> the job, empty if it does not exist
+     */
+    Optional<Job> getJob(String jobName);
+
+    /**
+     * Get every job
+     *
+     * @return Collection<Job> the jobs, in the order of their ids
+     */
+    Collection<Job> getJobs();
+
+    /**
+     * Reward a player for doing an action, if their current job rewards it. The reward is paid out with the player's
+     * other job rewards.
+     *
+     * @param player the player that did the action
+     * @param action what the player did
+     * @param target what the action was done to, such as the id of the crafted item
+     * @return boolean whether or not the player's job rewards the action
+     */
+    boolean reward(Player player, JobAction action, String target);
+}
@@ -0,0 +1,341 @@
+/*
+ * This file is part of Total Economy, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Eric Grandt <https://www.ericgrandt.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.erigitic.jobs;
+
+import com.flowpowered.math.vector.Vector3i;
+import org.slf4j.Logger;
+import org.spongepowered.api.event.Listener;
+import org.spongepowered.api.event.world.SaveWorldEvent;
+import org.spongepowered.api.event.world.chunk.LoadChunkEvent;
+import org.spongepowered.api.event.world.chunk.UnloadChunkEvent;
+import org.spongepowered.api.world.Chunk;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Remembers which blocks were placed by players, so breaking them again isn't rewarded. Only blocks that a job rewards
+ * for breaking are tracked.
+ *
+ * Each chunk keeps a bit per block position. Chunks are grouped into regions of 32x32 chunks, and each region is
+ * stored in its own binary file (placedblocks/[world]/r.[x].[z].dat). A region is read when the first of its chunks
+ * loads, and written and dropped when the last of its chunks unloads, when the world saves and when the server stops.
+ *
+ * Only used from the server thread.
+ */
+public class PlacedBlockTracker {
+    private static final int MAGIC = 0x54455042;
+    private static final int VERSION = 1;
+
+    private static final int REGION_SHIFT = 5;
+    private static final int REGION_MASK = (1 << REGION_SHIFT) - 1;
+    private static final int WORLD_HEIGHT = 256;
+
+    // Amount of longs needed for one bit per block in a chunk
+    private static final int CHUNK_WORDS = WORLD_HEIGHT * 16 * 16 / Long.SIZE;
+
+    private final File directory;
+    private final Logger logger;
+
+    private final Map<UUID, Map<Long, Region>> worlds = new HashMap<>();
+
+    /**
+     * @param directory the directory the region files are stored in
+     * @param logger the plugin logger
+     */
+    public PlacedBlockTracker(File directory, Logger logger) {
+        this.directory = directory;
+        this.logger = logger;
+    }
+
+    /**
+     * Check if the block at a position was placed by a player
+     *
+     * @param worldId the UUID of the world
+     * @param position the block position
+     * @return boolean whether or not the block was placed by a player
+     */
+    public boolean isPlaced(UUID worldId, Vector3i position) {
+        if (position.getY() < 0 || position.getY() >= WORLD_HEIGHT) {
+            return false;
+        }
+
+        BitSet chunk = getRegion(worldId, position.getX() >> 4, position.getZ() >> 4).getChunk(position.getX() >> 4, position.getZ() >> 4, false);
+
+        return chunk != null && chunk.get(getBlockIndex(position));
+    }
+
+    /**
+     * Mark or unmark the block at a position as placed by a player
+     *
+     * @param worldId the UUID of the world
+     * @param position the block position
+     * @param placed whether or not the block was placed by a player
+     */
+    public void setPlaced(UUID worldId, Vector3i position, boolean placed) {
+        if (position.getY() < 0 || position.getY() >= WORLD_HEIGHT) {
+            return;
+        }
+
+        Region region = getRegion(worldId, position.getX() >> 4, position.getZ() >> 4);
+        BitSet chunk = region.getChunk(position.getX() >> 4, position.getZ() >> 4, placed);
+
+        if (chunk != null && chunk.get(getBlockIndex(position)) != placed) {
+            chunk.set(getBlockIndex(position), placed);
+            region.dirty = true;
+        }
+    }
+
+    /**
+     * Write every changed region to disk. Called when the server stops.
+     */
+    public void save() {
+        for (Map<Long, Region> regions : worlds.values()) {
+            for (Region region : regions.values()) {
+                region.save();
+            }
+        }
+    }
+
+    @Listener
+    public void onChunkLoad(LoadChunkEvent event) {
+        Chunk chunk = event.getTargetChunk();
+
+        getRegion(chunk.getWorld().getUniqueId(), chunk.getPosition().getX(), chunk.getPosition().getZ()).loadedChunks++;
+    }
+
+    @Listener
+    public void onChunkUnload(UnloadChunkEvent event) {
+        Chunk chunk = event.getTargetChunk();
+        Map<Long, Region> regions = worlds.get(chunk.getWorld().getUniqueId());
+
+        if (regions == null) {
+            return;
+        }
+
+        long key = getRegionKey(chunk.getPosition().getX() >> REGION_SHIFT, chunk.getPosition().getZ() >> REGION_SHIFT);
+        Region region = regions.get(key);
+
+        if (region != null && --region.loadedChunks <= 0) {
+            region.save();
+            regions.remove(key);
+        }
+    }
+
+    @Listener
+    public void onWorldSave(SaveWorldEvent event) {
+        Map<Long, Region> regions = worlds.get(event.getTargetWorld().getUniqueId());
+
+        if (regions == null) {
+            return;
+        }
+
+        Iterator<Region> iterator = regions.values().iterator();
+
+        while (iterator.hasNext()) {
+            Region region = iterator.next();
+
+            region.save();
+
+            // Regions that were read for a lookup outside of any loaded chunk are dropped once saved
+            if (region.loadedChunks <= 0) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Get the region holding a chunk, reading it from disk if it isn't in memory
+     *
+     * @param worldId the UUID of the world
+     * @param chunkX the chunk x coordinate
+     * @param chunkZ the chunk z coordinate
+     * @return Region the region
+     */
+    private Region getRegion(UUID worldId, int chunkX, int chunkZ) {
+        Map<Long, Region> regions = worlds.computeIfAbsent(worldId, id -> new HashMap<>());
+        int regionX = chunkX >> REGION_SHIFT;
+        int regionZ = chunkZ >> REGION_SHIFT;
+        long key = getRegionKey(regionX, regionZ);
+        Region region = regions.get(key);
+
+        if (region == null) {
+            region = new Region(new File(new File(directory, worldId.toString()), "r." + regionX + "." + regionZ + ".dat"));
+            region.load();
+
+            regions.put(key, region);
+        }
+
+        return region;
+    }
+
+    private static long getRegionKey(int regionX, int regionZ) {
+        return ((long) regionX << 32) | (regionZ & 0xFFFFFFFFL);
+    }
+
+    private static int getBlockIndex(Vector3i position) {
+        return (position.getY() << 8) | ((position.getZ() & 15) << 4) | (position.getX() & 15);
+    }
+
+    /**
+     * The placed blocks of the chunks in one region file
+     */
+    private class Region {
+        private final File file;
+        private final BitSet[] chunks = new BitSet[1 << (REGION_SHIFT * 2)];
+        private int loadedChunks;
+        private boolean dirty;
+
+        private Region(File file) {
+            this.file = file;
+        }
+
+        /**
+         * Get the placed blocks of a chunk in the region
+         *
+         * @param chunkX the chunk x coordinate
+         * @param chunkZ the chunk z coordinate
+         * @param create whether or not to create the chunk if nothing was placed in it yet
+         * @return BitSet the placed blocks, or null if nothing was placed in the chunk and create is false
+         */
+        private BitSet getChunk(int chunkX, int chunkZ, boolean create) {
+            int index = ((chunkZ & REGION_MASK) << REGION_SHIFT) | (chunkX & REGION_MASK);
+
+            if (chunks[index] == null && create) {
+                chunks[index] = new BitSet();
+            }
+
+            return chunks[index];
+        }
+
+        private void load() {
+            if (!file.exists()) {
+                return;
+            }
+
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file.toPath())))) {
+                if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                    logger.warn("Unknown placed block file " + file.getName() + ", it will be replaced.");
+                    return;
+                }
+
+                // Read into a separate array so a damaged file leaves the region empty instead of half loaded
+                BitSet[] loaded = new BitSet[chunks.length];
+                int chunkCount = in.readInt();
+
+                if (chunkCount < 0 || chunkCount > loaded.length) {
+                    throw new IOException("Invalid chunk count " + chunkCount);
+                }
+
+                for (int i = 0; i < chunkCount; i++) {
+                    int index = in.readUnsignedShort();
+                    int wordCount = in.readInt();
+
+                    if (index >= loaded.length || wordCount < 0 || wordCount > CHUNK_WORDS) {
+                        throw new IOException("Invalid chunk " + index + " with " + wordCount + " words");
+                    }
+
+                    long[] words = new long[wordCount];
+
+                    for (int word = 0; word < words.length; word++) {
+                        words[word] = in.readLong();
+                    }
+
+                    loaded[index] = BitSet.valueOf(words);
+                }
+
+                System.arraycopy(loaded, 0, chunks, 0, loaded.length);
+            } catch (IOException e) {
+                logger.warn("Could not read placed block file " + file.getName() + ", it will be replaced.");
+            }
+        }
+
+        /**
+         * Write the region to a temporary file and move it over the region file, if anything changed since it was read
+         */
+        private void save() {
+            if (!dirty) {
+                return;
+            }
+
+            int chunkCount = 0;
+
+            for (BitSet chunk : chunks) {
+                if (chunk != null && !chunk.isEmpty()) {
+                    chunkCount++;
+                }
+            }
+
+            try {
+                if (chunkCount == 0) {
+                    Files.deleteIfExists(file.toPath());
+                    dirty = false;
+                    return;
+                }
+
+                file.getParentFile().mkdirs();
+
+                Path tempPath = new File(file.getParentFile(), file.getName() + ".tmp").toPath();
+
+                try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempPath)))) {
+                    out.writeInt(MAGIC);
+                    out.writeInt(VERSION);
+                    out.writeInt(chunkCount);
+
+                    for (int index = 0; index < chunks.length; index++) {
+                        if (chunks[index] != null && !chunks[index].isEmpty()) {
+                            long[] words = chunks[index].toLongArray();
+
+                            out.writeShort(index);
+                            out.writeInt(words.length);
+
+                            for (long word : words) {
+                                out.writeLong(word);
+                            }
+                        }
+                    }
+                }
+
+                Files.move(tempPath, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                dirty = false;
+            } catch (IOException e) {
+                logger.warn("Could not save placed block file " + file.getName() + "!");
+            }
+        }
+    }
+}
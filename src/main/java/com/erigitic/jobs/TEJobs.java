@@ -26,17 +26,18 @@
 package com.erigitic.jobs;
 
 import com.erigitic.config.AccountManager;
-import com.erigitic.config.TEAccount;
-import com.erigitic.jobs.jobs.FishermanJob;
-import com.erigitic.jobs.jobs.LumberjackJob;
-import com.erigitic.jobs.jobs.MinerJob;
-import com.erigitic.jobs.jobs.WarriorJob;
+import com.erigitic.config.AccountRecord;
+import com.erigitic.config.EconomyStats;
+import com.erigitic.config.IncomeSource;
+import com.erigitic.config.TransactionBatch;
 import com.erigitic.main.TotalEconomy;
 import ninja.leaping.configurate.ConfigurationNode;
 import ninja.leaping.configurate.commented.CommentedConfigurationNode;
 import ninja.leaping.configurate.hocon.HoconConfigurationLoader;
 import ninja.leaping.configurate.loader.ConfigurationLoader;
 import org.slf4j.Logger;
+import org.spongepowered.api.asset.Asset;
+import org.spongepowered.api.block.BlockSnapshot;
 import org.spongepowered.api.block.tileentity.Sign;
 import org.spongepowered.api.block.tileentity.TileEntity;
 import org.spongepowered.api.data.Transaction;
@@ -53,50 +54,73 @@ import org.spongepowered.api.event.cause.Cause;
 import org.spongepowered.api.event.cause.NamedCause;
 import org.spongepowered.api.event.cause.entity.damage.source.EntityDamageSource;
 import org.spongepowered.api.event.entity.DestructEntityEvent;
+import org.spongepowered.api.event.game.state.GameStartedServerEvent;
 import org.spongepowered.api.item.inventory.ItemStack;
 import org.spongepowered.api.item.inventory.ItemStackSnapshot;
 import org.spongepowered.api.scheduler.Scheduler;
 import org.spongepowered.api.scheduler.Task;
+import org.spongepowered.api.service.economy.account.UniqueAccount;
+import org.spongepowered.api.service.economy.transaction.ResultType;
+import org.spongepowered.api.service.economy.transaction.TransactionResult;
 import org.spongepowered.api.text.Text;
 import org.spongepowered.api.text.format.TextColors;
 
 import java.io.File;
 import java.io.IOException;
-import java.math.BigDecimal;
 import java.util.*;
 import java.util.concurrent.TimeUnit;
 
-public class TEJobs {
+public class TEJobs implements JobService {
     private TotalEconomy totalEconomy;
     private AccountManager accountManager;
-    private ConfigurationNode accountConfig;
     private Logger logger;
 
     private File jobsFile;
     private ConfigurationLoader<CommentedConfigurationNode> loader;
     private ConfigurationNode jobsConfig;
+    private volatile JobRewardTable rewardTable;
+    private final Cause jobCause;
+    private final JobRewardAccumulator rewardAccumulator = new JobRewardAccumulator();
+    private final JobNotifier notifier;
+    private final PlacedBlockTracker placedBlocks;
 
-    private MinerJob miner;
-    private LumberjackJob lumberjack;
-    private WarriorJob warrior;
-    private FishermanJob fisherman;
+    private final Map<String, JobAction> actions = new LinkedHashMap<>();
+    private final Map<String, ConfigurationNode> registeredJobs = new LinkedHashMap<>();
 
     public TEJobs(TotalEconomy totalEconomy) {
         this.totalEconomy = totalEconomy;
 
-        miner = new MinerJob();
-        lumberjack = new LumberjackJob();
-        warrior = new WarriorJob();
-        fisherman = new FishermanJob();
-
         accountManager = totalEconomy.getAccountManager();
-        accountConfig = accountManager.getAccountConfig();
         logger = totalEconomy.getLogger();
+        jobCause = Cause.of(NamedCause.of("TotalEconomy", totalEconomy.getPluginContainer()), NamedCause.of(EconomyStats.SOURCE, IncomeSource.JOB));
+
+        notifier = new JobNotifier(totalEconomy);
+
+        for (JobAction action : Arrays.asList(JobAction.BREAK, JobAction.PLACE, JobAction.KILL, JobAction.CATCH)) {
+            actions.put(action.getNodeName(), action);
+        }
+
+        placedBlocks = new PlacedBlockTracker(new File(totalEconomy.getConfigDir(), "placedblocks"), logger);
 
         setupConfig();
 
         if (totalEconomy.isLoadSalary())
             startSalaryTask();
+
+        if (totalEconomy.getJobRewardInterval() > 0)
+            startRewardTask();
+
+        notifier.start();
+    }
+
+    /**
+     * Start the timer that pays out the job rewards players have earned, every reward interval in ticks
+     */
+    private void startRewardTask() {
+        int interval = totalEconomy.getJobRewardInterval();
+
+        totalEconomy.getGame().getScheduler().createTaskBuilder().execute(() -> flushRewards())
+                .delayTicks(interval).intervalTicks(interval).name("Total Economy - Job Rewards").submit(totalEconomy);
     }
 
     /**
@@ -107,16 +131,30 @@ public class TEJobs {
         Task.Builder payTask = scheduler.createTaskBuilder();
 
         Task task = payTask.execute(() -> {
+                TransactionBatch batch = new TransactionBatch(Cause.of(NamedCause.of("TotalEconomy", totalEconomy.getPluginContainer()), NamedCause.of(EconomyStats.SOURCE, IncomeSource.SALARY)));
+                List<Player> paidPlayers = new ArrayList<>();
+
                 for (Player player : totalEconomy.getServer().getOnlinePlayers()) {
-                    BigDecimal salary = new BigDecimal(jobsConfig.getNode(getPlayerJob(player), "salary").getString());
-                    boolean salaryDisabled = jobsConfig.getNode(getPlayerJob(player), "disablesalary").getBoolean();
+                    Job job = rewardTable.getJob(getPlayerJob(player));
+                    Optional<UniqueAccount> playerAccount = accountManager.getOrCreateAccount(player.getUniqueId());
+
+                    if (job != null && job.getSalary().isPresent() && playerAccount.isPresent()) {
+                        batch.deposit(playerAccount.get(), job.getSalary().get());
+                        paidPlayers.add(player);
+                    }
+                }
+
+                if (batch.size() == 0) {
+                    return;
+                }
 
-                    if (!salaryDisabled) {
-                        TEAccount playerAccount = (TEAccount) accountManager.getOrCreateAccount(player.getUniqueId()).get();
+                // Every salary is paid under one lock pass, one journal record and one event
+                List<TransactionResult> results = accountManager.applyBatch(batch);
 
-                        playerAccount.deposit(totalEconomy.getDefaultCurrency(), salary, Cause.of(NamedCause.of("TotalEconomy", totalEconomy.getPluginContainer())));
-                        player.sendMessage(Text.of(TextColors.GRAY, "Your salary of ", TextColors.GOLD,
-                                totalEconomy.getCurrencySymbol(), salary, TextColors.GRAY, " has just been paid."));
+                for (int i = 0; i < results.size(); i++) {
+                    if (results.get(i).getResult() == ResultType.SUCCESS) {
+                        paidPlayers.get(i).sendMessage(Text.of(TextColors.GRAY, "Your salary of ", TextColors.GOLD,
+                                totalEconomy.getCurrencySymbol(), results.get(i).getAmount(), TextColors.GRAY, " has just been paid."));
                     }
                 }
         }).delay(jobsConfig.getNode("salarydelay").getInt(), TimeUnit.SECONDS).interval(jobsConfig.getNode("salarydelay")
@@ -131,25 +169,21 @@ public class TEJobs {
         loader = HoconConfigurationLoader.builder().setFile(jobsFile).build();
 
         try {
-            jobsConfig = loader.load();
-
+            // The default jobs are shipped as a config file in the plugin jar
             if (!jobsFile.exists()) {
-                jobsConfig.getNode("jobs").setValue("Miner, Lumberjack, Warrior, Fisherman");
+                Optional<Asset> defaultJobs = totalEconomy.getPluginContainer().getAsset("jobs.conf");
 
-                miner.setupJobValues(jobsConfig);
-                lumberjack.setupJobValues(jobsConfig);
-                warrior.setupJobValues(jobsConfig);
-                fisherman.setupJobValues(jobsConfig);
-
-                jobsConfig.getNode("Unemployed", "disablesalary").setValue(false);
-                jobsConfig.getNode("Unemployed", "salary").setValue(20);
-                jobsConfig.getNode("salarydelay").setValue(300);
-
-                loader.save(jobsConfig);
+                if (defaultJobs.isPresent()) {
+                    defaultJobs.get().copyToFile(jobsFile.toPath());
+                }
             }
+
+            jobsConfig = loader.load();
         } catch (IOException e) {
             logger.warn("Could not create jobs config file!");
         }
+
+        compileRewards();
     }
 
     /**
@@ -161,50 +195,203 @@ public class TEJobs {
         } catch (IOException e) {
             logger.warn("Could not reload jobs config file!");
         }
+
+        compileRewards();
+        warnUnknownActions();
+    }
+
+    /**
+     * Compile the jobs in the jobs config into the table used by the listeners
+     */
+    private void compileRewards() {
+        rewardTable = JobRewardTable.compile(jobsConfig, registeredJobs, actions, accountManager.getDefaultCurrency().getSymbol(), logger);
+    }
+
+    /**
+     * Warn about actions in jobs that no plugin registered. Only done once the server has started, since plugins
+     * register their actions after the jobs config is first read.
+     */
+    private void warnUnknownActions() {
+        for (String actionName : rewardTable.getUnknownActions()) {
+            logger.warn("Unknown job action " + actionName + ", it will be ignored.");
+        }
+    }
+
+    @Listener
+    public void onServerStarted(GameStartedServerEvent event) {
+        warnUnknownActions();
+    }
+
+    @Override
+    public JobAction registerAction(Object plugin, String nodeName) {
+        JobAction action = actions.get(nodeName);
+
+        if (action == null) {
+            action = new JobAction(nodeName);
+            actions.put(nodeName, action);
+
+            compileRewards();
+        }
+
+        return action;
+    }
+
+    @Override
+    public Optional<JobAction> getAction(String nodeName) {
+        return Optional.ofNullable(actions.get(nodeName));
+    }
+
+    @Override
+    public void registerJob(Object plugin, String jobName, ConfigurationNode definition) {
+        registeredJobs.put(jobName, definition);
+
+        compileRewards();
+    }
+
+    @Override
+    public Collection<Job> getJobs() {
+        return rewardTable.getJobs();
+    }
+
+    @Override
+    public boolean reward(Player player, JobAction action, String target) {
+        Job job = rewardTable.getJob(getPlayerJob(player));
+        JobReward reward = job != null ? job.getReward(action, target) : null;
+
+        if (reward == null) {
+            return false;
+        }
+
+        addReward(player, job, reward);
+        rewardsEarned(player);
+
+        return true;
     }
 
     /**
-     * Add exp to player's current job
+     * Add exp to a job
      *
-     * @param player player object
+     * @param record the account record
+     * @param jobName the name of the job
      * @param expAmount amount of exp to be gained
      */
-    public void addExp(Player player, int expAmount) {
-        String jobName = getPlayerJob(player);
-        UUID playerUUID = player.getUniqueId();
-        int curExp = accountConfig.getNode(playerUUID.toString(), "jobstats", jobName + "Exp").getInt();
+    private void gainExp(AccountRecord record, String jobName, int expAmount) {
+        AccountRecord.JobStats jobStats = record.getOrCreateJobStats(jobName);
 
-        accountConfig.getNode(playerUUID.toString(), "jobstats", jobName + "Exp").setValue(curExp + expAmount);
+        jobStats.setExp(jobStats.getExp() + expAmount);
+        accountManager.recordJobStats(record, jobName);
+    }
 
-        try {
-            accountManager.getConfigManager().save(accountConfig);
-        } catch (IOException e) {
-            logger.warn("Problem saving account config!");
+    /**
+     * Level up a job for as long as there is enough exp for the next level, since one payout can hold several levels
+     * worth of exp
+     *
+     * @param record the account record
+     * @param jobName the name of the job
+     * @return boolean if the job gained at least one level
+     */
+    private boolean levelUp(AccountRecord record, String jobName) {
+        AccountRecord.JobStats jobStats = record.getOrCreateJobStats(jobName);
+        int startLevel = jobStats.getLevel();
+        int playerLevel = startLevel;
+        int exp = jobStats.getExp();
+
+        // Every level needs exp, a level below 1 would otherwise loop forever
+        while (playerLevel > 0 && exp >= playerLevel * 100) {
+            exp -= playerLevel * 100;
+            playerLevel++;
+        }
+
+        if (playerLevel == startLevel) {
+            return false;
+        }
+
+        jobStats.setLevel(playerLevel);
+        jobStats.setExp(exp);
+        accountManager.recordJobStats(record, jobName);
+
+        return true;
+    }
+
+    /**
+     * Pay out the rewards every player has earned since the last payout
+     */
+    public void flushRewards() {
+        if (rewardAccumulator.isEmpty()) {
+            return;
         }
 
-        if (accountConfig.getNode(playerUUID.toString(), "jobnotifications").getBoolean() == true)
-            player.sendMessage(Text.of(TextColors.GRAY, "You have gained ", TextColors.GOLD, expAmount, TextColors.GRAY,
-                    " exp in the ", TextColors.GOLD, jobName, TextColors.GRAY, " job."));
+        for (Map.Entry<UUID, JobRewardAccumulator.PendingReward> entry : rewardAccumulator.drain().entrySet()) {
+            payOut(entry.getKey(), entry.getValue());
+        }
     }
 
     /**
-     * Checks if the player has enough exp to level up. If they do they will gain a level and their current exp will be
-     * reset.
+     * Pay out the rewards a player has earned since the last payout and send them the summary right away. Called
+     * before the player's job changes and when they leave.
      *
-     * @param player player object
+     * @param uuid the player's UUID
+     */
+    public void flushRewards(UUID uuid) {
+        JobRewardAccumulator.PendingReward pendingReward = rewardAccumulator.remove(uuid);
+
+        if (pendingReward != null) {
+            payOut(uuid, pendingReward);
+        }
+
+        notifier.flush(uuid);
+    }
+
+    /**
+     * Give a player their pending rewards with a single deposit, exp gain and level check
+     *
+     * @param uuid the player's UUID
+     * @param pendingReward the rewards earned since the last payout
+     */
+    private void payOut(UUID uuid, JobRewardAccumulator.PendingReward pendingReward) {
+        Optional<Player> player = totalEconomy.getServer().getPlayer(uuid);
+        Optional<UniqueAccount> playerAccount = accountManager.getOrCreateAccount(uuid);
+        AccountRecord record = accountManager.getRecord(uuid);
+        String jobName = pendingReward.getJobName();
+        JobReward reward = pendingReward.toReward(accountManager.getDefaultCurrency().getSymbol());
+
+        if (!playerAccount.isPresent() || record == null) {
+            logger.warn("Could not load the account of " + uuid + ", their job rewards could not be paid.");
+
+            return;
+        }
+
+        gainExp(record, jobName, reward.getExp());
+        playerAccount.get().deposit(accountManager.getDefaultCurrency(), reward.getPayAmount(), jobCause);
+
+        notifier.add(uuid, record, jobName, reward);
+
+        if (levelUp(record, jobName) && player.isPresent()) {
+            player.get().sendMessage(Text.of(TextColors.GRAY, "Congratulations, you are now a level ", TextColors.GOLD,
+                    record.getJobLevel(jobName), " ", jobName, "."));
+        }
+    }
+
+    /**
+     * Add a reward to a player's pending rewards
+     *
+     * @param player the player that earned the reward
+     * @param job the job the reward was earned in
+     * @param reward the reward
+     */
+    private void addReward(Player player, Job job, JobReward reward) {
+        rewardAccumulator.add(player.getUniqueId(), job.getName(), reward);
+    }
+
+    /**
+     * Called after an event added rewards for a player. With a reward interval of 0 the rewards are paid out right
+     * away instead of waiting for the reward task.
+     *
+     * @param player the player that earned the rewards
      */
-    public void checkForLevel(Player player) {
-        UUID playerUUID = player.getUniqueId();
-        String jobName = getPlayerJob(player);
-        int playerLevel = accountConfig.getNode(playerUUID.toString(), "jobstats", jobName + "Level").getInt();
-        int playerCurExp = accountConfig.getNode(playerUUID.toString(), "jobstats", jobName + "Exp").getInt();
-        int expToLevel = getExpToLevel(player);
-
-        if (playerCurExp >= expToLevel) {
-            accountConfig.getNode(playerUUID.toString(), "jobstats", jobName + "Level").setValue(playerLevel + 1);
-            accountConfig.getNode(playerUUID.toString(), "jobstats", jobName + "Exp").setValue(playerCurExp - expToLevel);
-            player.sendMessage(Text.of(TextColors.GRAY, "Congratulations, you are now a level ", TextColors.GOLD,
-                    playerLevel + 1, " ", jobName, "."));
+    private void rewardsEarned(Player player) {
+        if (totalEconomy.getJobRewardInterval() <= 0) {
+            flushRewards(player.getUniqueId());
         }
     }
 
@@ -215,11 +402,18 @@ public class TEJobs {
      * @return boolean if the job exists or not
      */
     public boolean jobExists(String jobName) {
-        if (jobsConfig.getNode(convertToTitle(jobName)).getValue() != null) {
-            return true;
-        }
+        return rewardTable.getJob(jobName) != null;
+    }
 
-        return false;
+    /**
+     * Get a job by its name, ignoring case
+     *
+     * @param jobName name of the job
+     * @return Optional<Job> the job, empty if it does not exist
+     */
+    @Override
+    public Optional<Job> getJob(String jobName) {
+        return Optional.ofNullable(rewardTable.getJob(jobName));
     }
 
     /**
@@ -239,28 +433,28 @@ public class TEJobs {
      * @param jobName name of the job
      */
     public void setJob(Player player, String jobName) {
-        UUID playerUUID = player.getUniqueId();
         boolean jobPermissions = totalEconomy.isJobPermissions();
+        Job job = rewardTable.getJob(jobName);
 
-        if (jobExists(jobName)) {
-            if ((jobPermissions && player.hasPermission("main.job." + jobName)) || !jobPermissions) {
-                jobName = convertToTitle(jobName);
+        if (job != null) {
+            if ((jobPermissions && player.hasPermission(job.getPermission())) || !jobPermissions) {
+                jobName = job.getName();
 
-                accountConfig.getNode(playerUUID.toString(), "job").setValue(jobName);
+                Optional<AccountRecord> record = accountManager.getOrLoadRecord(player.getUniqueId());
 
-                if (accountConfig.getNode(playerUUID.toString(), "jobstats", jobName + "Level").getValue() == null) {
-                    accountConfig.getNode(playerUUID.toString(), "jobstats", jobName + "Level").setValue(1);
-                }
+                if (!record.isPresent()) {
+                    player.sendMessage(Text.of(TextColors.RED, "Could not load your account."));
 
-                if (accountConfig.getNode(playerUUID.toString(), "jobstats", jobName + "Exp").getValue() == null) {
-                    accountConfig.getNode(playerUUID.toString(), "jobstats", jobName + "Exp").setValue(0);
+                    return;
                 }
 
-                try {
-                    accountManager.getConfigManager().save(accountConfig);
-                } catch (IOException e) {
-                    logger.warn("Could not save account config while setting job!");
-                }
+                // Rewards earned in the old job are paid out before it changes
+                flushRewards(player.getUniqueId());
+
+                record.get().setJob(jobName);
+                record.get().getOrCreateJobStats(jobName);
+
+                accountManager.recordJobStats(record.get(), jobName);
 
                 player.sendMessage(Text.of(TextColors.GRAY, "Your job has been changed to ", TextColors.GOLD, jobName));
             } else {
@@ -275,10 +469,10 @@ public class TEJobs {
      * Get the player's current job
      *
      * @param player
-     * @return String the job the player currently has
+     * @return String the job the player currently has, or null if their account could not be read
      */
     public String getPlayerJob(Player player) {
-        return accountConfig.getNode(player.getUniqueId().toString(), "job").getString();
+        return accountManager.getOrLoadRecord(player.getUniqueId()).map(AccountRecord::getJob).orElse(null);
     }
 
     /**
@@ -289,7 +483,7 @@ public class TEJobs {
      * @return int the job exp
      */
     public int getJobExp(String jobName, Player player) {
-        return accountConfig.getNode(player.getUniqueId().toString(), "jobstats", jobName + "Exp").getInt();
+        return accountManager.getOrLoadRecord(player.getUniqueId()).map(record -> record.getJobExp(jobName)).orElse(0);
     }
 
     /**
@@ -300,7 +494,7 @@ public class TEJobs {
      * @return int the job level
      */
     public int getJobLevel(String jobName, Player player) {
-        return accountConfig.getNode(player.getUniqueId().toString(), "jobstats", jobName + "Level").getInt();
+        return accountManager.getOrLoadRecord(player.getUniqueId()).map(record -> record.getJobLevel(jobName)).orElse(0);
     }
 
     /**
@@ -310,11 +504,7 @@ public class TEJobs {
      * @return int the amount of exp needed to level
      */
     public int getExpToLevel(Player player) {
-        UUID playerUUID = player.getUniqueId();
-        String jobName = getPlayerJob(player);
-        int playerLevel = accountConfig.getNode(playerUUID.toString(), "jobstats", jobName + "Level").getInt();
-
-        return playerLevel * 100;
+        return accountManager.getOrLoadRecord(player.getUniqueId()).map(record -> record.getJobLevel(record.getJob()) * 100).orElse(0);
     }
 
     /**
@@ -323,7 +513,22 @@ public class TEJobs {
      * @return String list of jobs
      */
     public String getJobList() {
-        return jobsConfig.getNode("jobs").getString();
+        StringJoiner jobList = new StringJoiner(", ");
+
+        for (Job job : rewardTable.getJobs()) {
+            jobList.add(job.getName());
+        }
+
+        return jobList.toString();
+    }
+
+    /**
+     * Get the tracker of the blocks placed by players
+     *
+     * @return PlacedBlockTracker the placed block tracker
+     */
+    public PlacedBlockTracker getPlacedBlockTracker() {
+        return placedBlocks;
     }
 
     /**
@@ -351,12 +556,12 @@ public class TEJobs {
         if (lineOnePlain.equals("[TEJobs]")) {
             lineOne = lineOne.toBuilder().color(TextColors.GOLD).build();
 
-            String jobName = convertToTitle(lineTwoPlain);
+            Job job = rewardTable.getJob(lineTwoPlain);
 
-            if (jobExists(lineTwoPlain)) {
-                lineTwo = Text.of(jobName).toBuilder().color(TextColors.GRAY).build();
+            if (job != null) {
+                lineTwo = Text.of(job.getName()).toBuilder().color(TextColors.GRAY).build();
             } else {
-                lineTwo = Text.of(jobName).toBuilder().color(TextColors.RED).build();
+                lineTwo = Text.of(convertToTitle(lineTwoPlain)).toBuilder().color(TextColors.RED).build();
             }
 
             data.set(data.lines().set(0, lineOne));
@@ -405,93 +610,80 @@ public class TEJobs {
     }
 
     /**
-     * Used for the break option in jobs. Will check if the job has the break node and if it does it will check if the
-     * block that was broken is present in the config of the player's job. If it is, it will grab the job exp reward as
-     * well as the pay.
+     * Used for the break option in jobs. Every block broken in the event is looked up in the reward table for the
+     * player's job, and the blocks that are rewarded and weren't placed by a player are paid out together.
      *
      * @param event ChangeBlockEvent.Break
      */
     @Listener
     public void onPlayerBlockBreak(ChangeBlockEvent.Break event) {
         if (event.getCause().first(Player.class).isPresent()) {
-            Player player = event.getCause().first(Player.class).get();
-            UUID playerUUID = player.getUniqueId();
-            String playerJob = getPlayerJob(player);
-
-            if (event.getTransactions().get(0).getOriginal().getState().getType().getName().split(":").length >= 2) {
-                String blockName = event.getTransactions().get(0).getOriginal().getState().getType().getName().split(":")[1];
-                Optional<UUID> blockCreator = event.getTransactions().get(0).getOriginal().getCreator();
-
-                // Checks if the users current job has the break node.
-                boolean hasBreakNode = (jobsConfig.getNode(playerJob, "break").getValue() != null);
-
-                if (jobsConfig.getNode(playerJob).getValue() != null) {
-                    if (hasBreakNode && jobsConfig.getNode(playerJob, "break", blockName).getValue() != null) {
-                        if (!blockCreator.isPresent()) {
-                            int expAmount = jobsConfig.getNode(playerJob, "break", blockName, "expreward").getInt();
-                            boolean notify = accountConfig.getNode(playerUUID.toString(), "jobnotifications").getBoolean();
-
-                            BigDecimal payAmount = new BigDecimal(jobsConfig.getNode(playerJob, "break", blockName, "pay").getString()).setScale(2, BigDecimal.ROUND_DOWN);
-
-                            TEAccount playerAccount = (TEAccount) accountManager.getOrCreateAccount(player.getUniqueId()).get();
+            rewardBlocks(event.getCause().first(Player.class).get(), JobAction.BREAK, event.getTransactions());
+        }
 
-                            if (notify) {
-                                player.sendMessage(Text.of(TextColors.GOLD, accountManager.getDefaultCurrency().getSymbol(), payAmount, TextColors.GRAY, " has been added to your balance."));
-                            }
+        // The broken blocks are gone no matter what broke them, so they no longer count as placed
+        for (Transaction<BlockSnapshot> transaction : event.getTransactions()) {
+            BlockSnapshot original = transaction.getOriginal();
 
-                            addExp(player, expAmount);
-                            playerAccount.deposit(accountManager.getDefaultCurrency(), payAmount, Cause.of(NamedCause.of("TotalEconomy", totalEconomy.getPluginContainer())));
-                            checkForLevel(player);
-                        }
-                    }
-                }
+            if (rewardTable.isRewarded(JobAction.BREAK, original.getState().getType().getId())) {
+                placedBlocks.setPlaced(original.getWorldUniqueId(), original.getPosition(), false);
             }
         }
     }
 
     /**
-     * Used for the place option in jobs. Will check if the job has the place node and if it does it will check if the
-     * block that was placed is present in the config of the player's job. If it is, it will grab the job exp reward as
-     * well as the pay.
+     * Used for the place option in jobs. Every block placed in the event is looked up in the reward table for the
+     * player's job, and the blocks that are rewarded are paid out together.
      *
      * @param event ChangeBlockEvent.Place
      */
     @Listener
     public void onPlayerPlaceBlock(ChangeBlockEvent.Place event) {
         if (event.getCause().first(Player.class).isPresent()) {
-            Player player = event.getCause().first(Player.class).get();
-            UUID playerUUID = player.getUniqueId();
-            String playerJob = getPlayerJob(player);
-            String blockName = event.getTransactions().get(0).getFinal().getState().getType().getName().split(":")[1];
+            rewardBlocks(event.getCause().first(Player.class).get(), JobAction.PLACE, event.getTransactions());
 
-            //Checks if the users current job has the place node.
-            boolean hasPlaceNode = (jobsConfig.getNode(playerJob, "place").getValue() != null);
+            // Placed blocks that some job rewards for breaking are remembered so breaking them isn't rewarded
+            for (Transaction<BlockSnapshot> transaction : event.getTransactions()) {
+                BlockSnapshot placed = transaction.getFinal();
 
-            if (jobsConfig.getNode(playerJob).getValue() != null) {
-                if (hasPlaceNode && jobsConfig.getNode(playerJob, "place", blockName).getValue() != null) {
-                    int expAmount = jobsConfig.getNode(playerJob, "place", blockName, "expreward").getInt();
-                    boolean notify = accountConfig.getNode(playerUUID.toString(), "jobnotifications").getBoolean();
+                if (rewardTable.isRewarded(JobAction.BREAK, placed.getState().getType().getId())) {
+                    placedBlocks.setPlaced(placed.getWorldUniqueId(), placed.getPosition(), true);
+                }
+            }
+        }
+    }
 
-                    BigDecimal payAmount = new BigDecimal(jobsConfig.getNode(playerJob, "place", blockName, "pay").getString()).setScale(2, BigDecimal.ROUND_DOWN);
+    /**
+     * Add the rewards for all of the blocks changed in one event to the player's pending rewards. Events can hold many
+     * blocks when a plugin fells a whole tree or mines a whole vein at once.
+     *
+     * @param player the player that changed the blocks
+     * @param action JobAction.BREAK or JobAction.PLACE
+     * @param transactions the block transactions of the event
+     */
+    private void rewardBlocks(Player player, JobAction action, List<Transaction<BlockSnapshot>> transactions) {
+        Job job = rewardTable.getJob(getPlayerJob(player));
 
-                    TEAccount playerAccount = (TEAccount) accountManager.getOrCreateAccount(player.getUniqueId()).get();
+        if (job == null || !job.hasRewards(action)) {
+            return;
+        }
 
-                    if (notify) {
-                        player.sendMessage(Text.of(TextColors.GOLD, accountManager.getDefaultCurrency().getSymbol(), payAmount, TextColors.GRAY, " has been added to your balance."));
-                    }
+        for (Transaction<BlockSnapshot> transaction : transactions) {
+            // Broken blocks are rewarded by what was there before, placed blocks by what is there after
+            BlockSnapshot block = action == JobAction.BREAK ? transaction.getOriginal() : transaction.getFinal();
+            JobReward reward = job.getReward(action, block.getState().getType().getId());
 
-                    addExp(player, expAmount);
-                    playerAccount.deposit(accountManager.getDefaultCurrency(), payAmount, Cause.of(NamedCause.of("TotalEconomy", totalEconomy.getPluginContainer())));
-                    checkForLevel(player);
-                }
+            if (reward != null && !(action == JobAction.BREAK && placedBlocks.isPlaced(block.getWorldUniqueId(), block.getPosition()))) {
+                addReward(player, job, reward);
             }
         }
+
+        rewardsEarned(player);
     }
 
     /**
-     * Used for the break option in jobs. Will check if the job has the break node and if it does it will check if the
-     * block that was broken is present in the config of the player's job. If it is, it will grab the job exp reward as
-     * well as the pay.
+     * Used for the kill option in jobs. Looks up the killed entity in the reward table for the killer's job and, if
+     * it is rewarded, rewards the killer.
      *
      * @param event DesctructEntityEvent.Death
      */
@@ -506,38 +698,20 @@ public class TEJobs {
 
             if (killer instanceof Player) {
                 Player player = (Player) killer;
-                UUID playerUUID = player.getUniqueId();
-                String playerJob = getPlayerJob(player);
-                String victimName = victim.getType().getName();
-
-                boolean hasKillNode = (jobsConfig.getNode(playerJob, "kill").getValue() != null);
-
-                if (jobsConfig.getNode(playerJob).getValue() != null) {
-                    if (hasKillNode && jobsConfig.getNode(playerJob, "kill", victimName).getValue() != null) {
-                        int expAmount = jobsConfig.getNode(playerJob, "kill", victimName, "expreward").getInt();
-                        boolean notify = accountConfig.getNode(playerUUID.toString(), "jobnotifications").getBoolean();
-
-                        BigDecimal payAmount = new BigDecimal(jobsConfig.getNode(playerJob, "kill", victimName, "pay").getString()).setScale(2, BigDecimal.ROUND_DOWN);
-
-                        TEAccount playerAccount = (TEAccount) accountManager.getOrCreateAccount(player.getUniqueId()).get();
-
-                        if (notify) {
-                            player.sendMessage(Text.of(TextColors.GOLD, accountManager.getDefaultCurrency().getSymbol(), payAmount, TextColors.GRAY, " has been added to your balance."));
-                        }
+                Job job = rewardTable.getJob(getPlayerJob(player));
+                JobReward reward = job != null ? job.getReward(JobAction.KILL, victim.getType().getName()) : null;
 
-                        addExp(player, expAmount);
-                        playerAccount.deposit(accountManager.getDefaultCurrency(), payAmount, Cause.of(NamedCause.of("TotalEconomy", totalEconomy.getPluginContainer())));
-                        checkForLevel(player);
-                    }
+                if (reward != null) {
+                    addReward(player, job, reward);
+                    rewardsEarned(player);
                 }
             }
         }
     }
 
     /**
-     * Used for the catch option in jobs. Will check if the job has the catch node and if it does it will check if the
-     * item that was caught is present in the config of the player's job. If it is, it will grab the job exp reward as
-     * well as the pay.
+     * Used for the catch option in jobs. Looks up the caught fish in the reward table for the player's job and, if it
+     * is rewarded, rewards the player.
      *
      * @param event FishingEvent.Stop
      */
@@ -547,35 +721,17 @@ public class TEJobs {
             Transaction<ItemStackSnapshot> itemTransaction = event.getItemStackTransaction().get(0);
             ItemStack itemStack = itemTransaction.getFinal().createStack();
             Player player = event.getCause().first(Player.class).get();
-            UUID playerUUID = player.getUniqueId();
-            String playerJob = getPlayerJob(player);
-
-            boolean hasCatchNode = (jobsConfig.getNode(playerJob, "catch").getValue() != null);
 
             if (itemStack.get(FishData.class).isPresent()) {
-                if (jobsConfig.getNode(playerJob).getValue() != null) {
-                    FishData fishData = itemStack.get(FishData.class).get();
-                    String fishName = fishData.type().get().getName();
-
-                    if (hasCatchNode && jobsConfig.getNode(playerJob, "catch", fishName).getValue() != null) {
-                        int expAmount = jobsConfig.getNode(playerJob, "catch", fishName, "expreward").getInt();
-                        boolean notify = accountConfig.getNode(playerUUID.toString(), "jobnotifications").getBoolean();
-
-                        BigDecimal payAmount = new BigDecimal(jobsConfig.getNode(playerJob, "catch", fishName, "pay").getString()).setScale(2, BigDecimal.ROUND_DOWN);
+                FishData fishData = itemStack.get(FishData.class).get();
+                Job job = rewardTable.getJob(getPlayerJob(player));
+                JobReward reward = job != null ? job.getReward(JobAction.CATCH, fishData.type().get().getName()) : null;
 
-                        TEAccount playerAccount = (TEAccount) accountManager.getOrCreateAccount(player.getUniqueId()).get();
-
-                        if (notify) {
-                            player.sendMessage(Text.of(TextColors.GOLD, accountManager.getDefaultCurrency().getSymbol(), payAmount, TextColors.GRAY, " has been added to your balance."));
-                        }
-
-                        addExp(player, expAmount);
-                        playerAccount.deposit(accountManager.getDefaultCurrency(), payAmount, Cause.of(NamedCause.of("TotalEconomy", totalEconomy.getPluginContainer())));
-                        checkForLevel(player);
-                    }
+                if (reward != null) {
+                    addReward(player, job, reward);
+                    rewardsEarned(player);
                 }
-
             }
         }
     }
-}
\ No newline at end of file
+}
@@ -27,7 +27,10 @@ package com.erigitic.main;
 
 import com.erigitic.commands.*;
 import com.erigitic.config.AccountManager;
+import com.erigitic.config.AccountRecord;
+import com.erigitic.config.NotificationMode;
 import com.erigitic.config.TECurrency;
+import com.erigitic.jobs.JobService;
 import com.erigitic.jobs.TEJobs;
 import com.google.inject.Inject;
 import ninja.leaping.configurate.ConfigurationNode;
@@ -83,7 +86,8 @@ public class TotalEconomy {
     @Inject
     private PluginContainer pluginContainer;
 
-    Optional<UserStorageService> userStorageService;
+    // Empty until the server has started
+    Optional<UserStorageService> userStorageService = Optional.empty();
 
     private ConfigurationNode config = null;
 
@@ -91,15 +95,31 @@ public class TotalEconomy {
 
     private AccountManager accountManager;
     private TEJobs teJobs;
+    private BalanceTopCache balanceTopCache;
 
     private boolean loadJobs = true;
     private boolean loadSalary = true;
     private boolean jobPermissions = false;
-    private boolean jobNotifications = true;
+    private NotificationMode defaultNotificationMode = NotificationMode.CHAT;
+    private int jobNotificationInterval = 60;
+    private int jobRewardInterval = 20;
 
     private boolean loadMoneyCap = false;
 
     private BigDecimal moneyCap;
+    private long moneyCapMinorUnits;
+
+    private int saveInterval = 30;
+    private int saveThreshold = 100;
+    private boolean journalSync = false;
+    private int saveGenerations = 3;
+
+    private String storageType = "hocon";
+    private String storageUrl = "";
+    private int accountIdleTimeout = 300;
+
+    private int balanceTopRefreshInterval = 60;
+    private int balanceTopRefreshChanges = 100;
 
     @Listener
     public void preInit(GamePreInitializationEvent event) {
@@ -111,10 +131,24 @@ public class TotalEconomy {
         loadJobs = config.getNode("features", "jobs", "enable").getBoolean();
         loadSalary = config.getNode("features", "jobs", "salary").getBoolean();
         jobPermissions = config.getNode("features", "jobs", "permissions").getBoolean();
-        jobNotifications = config.getNode("features", "jobs", "notifications").getBoolean();
+        defaultNotificationMode = NotificationMode.parse(config.getNode("features", "jobs", "notifications").getString(), defaultNotificationMode);
+        jobNotificationInterval = config.getNode("features", "jobs", "notification-interval").getInt(jobNotificationInterval);
+        jobRewardInterval = config.getNode("features", "jobs", "reward-interval").getInt(jobRewardInterval);
 
         loadMoneyCap = config.getNode("features", "moneycap", "enable").getBoolean();
 
+        saveInterval = config.getNode("save", "interval").getInt(saveInterval);
+        saveThreshold = config.getNode("save", "threshold").getInt(saveThreshold);
+        journalSync = config.getNode("save", "journal-sync").getBoolean(journalSync);
+        saveGenerations = config.getNode("save", "generations").getInt(saveGenerations);
+
+        storageType = config.getNode("storage", "type").getString(storageType);
+        storageUrl = config.getNode("storage", "url").getString(storageUrl);
+        accountIdleTimeout = config.getNode("storage", "idle-timeout").getInt(accountIdleTimeout);
+
+        balanceTopRefreshInterval = config.getNode("balancetop", "refresh-interval").getInt(balanceTopRefreshInterval);
+        balanceTopRefreshChanges = config.getNode("balancetop", "refresh-changes").getInt(balanceTopRefreshChanges);
+
         accountManager = new AccountManager(this);
 
         game.getServiceManager().setProvider(this, EconomyService.class, accountManager);
@@ -122,11 +156,14 @@ public class TotalEconomy {
         //Only setup job stuff if config is set to load jobs
         if (loadJobs == true) {
             teJobs = new TEJobs(this);
+
+            game.getServiceManager().setProvider(this, JobService.class, teJobs);
         }
 
         if (loadMoneyCap == true) {
             moneyCap = BigDecimal.valueOf(config.getNode("features", "moneycap", "amount").getFloat())
                     .setScale(2, BigDecimal.ROUND_DOWN);
+            moneyCapMinorUnits = AccountRecord.toMinorUnits(moneyCap);
         }
     }
 
@@ -134,8 +171,10 @@ public class TotalEconomy {
     public void init(GameInitializationEvent event) {
         createAndRegisterCommands();
 
-        if (loadJobs)
+        if (loadJobs) {
             game.getEventManager().registerListeners(this, teJobs);
+            game.getEventManager().registerListeners(this, teJobs.getPlacedBlockTracker());
+        }
     }
 
     @Listener
@@ -147,12 +186,22 @@ public class TotalEconomy {
     public void onServerStart(GameStartedServerEvent event) {
         userStorageService = game.getServiceManager().provide(UserStorageService.class);
 
+        // Player names can't be looked up until the server has started
+        balanceTopCache.start();
+
         logger.info("Total Economy Started");
     }
 
     @Listener
     public void onServerStopping(GameStoppingServerEvent event) {
         logger.info("Total Economy Stopping");
+
+        if (loadJobs) {
+            teJobs.flushRewards();
+            teJobs.getPlacedBlockTracker().save();
+        }
+
+        balanceTopCache.stop();
         accountManager.saveAccountConfig();
     }
 
@@ -161,15 +210,33 @@ public class TotalEconomy {
         logger.info("Total Economy Stopped");
     }
 
+    /**
+     * Reads the account of a player that is logging in. Fired off the server thread.
+     *
+     * @param event
+     */
+    @Listener
+    public void onPlayerAuth(ClientConnectionEvent.Auth event) {
+        accountManager.prefetchAccount(event.getProfile().getUniqueId());
+    }
+
     @Listener
     public void onPlayerJoin(ClientConnectionEvent.Join event) {
         if (event.getTargetEntity() instanceof Player) {
             Player player = event.getTargetEntity();
 
-            accountManager.getOrCreateAccount(player.getUniqueId());
+            accountManager.loadPlayerAccount(player.getUniqueId(), player.getName());
         }
     }
 
+    @Listener
+    public void onPlayerQuit(ClientConnectionEvent.Disconnect event) {
+        if (loadJobs)
+            teJobs.flushRewards(event.getTargetEntity().getUniqueId());
+
+        accountManager.unloadPlayerAccount(event.getTargetEntity().getUniqueId());
+    }
+
     /**
      * Reloads configuration files
      *
@@ -191,9 +258,20 @@ public class TotalEconomy {
                 config.getNode("features", "jobs", "enable").setValue(loadJobs);
                 config.getNode("features", "jobs", "salary").setValue(loadSalary);
                 config.getNode("features", "jobs", "permissions").setValue(jobPermissions);
-                config.getNode("features", "jobs", "notifications").setValue(true);
+                config.getNode("features", "jobs", "notifications").setValue(defaultNotificationMode.getName());
+                config.getNode("features", "jobs", "notification-interval").setValue(jobNotificationInterval);
+                config.getNode("features", "jobs", "reward-interval").setValue(jobRewardInterval);
                 config.getNode("features", "moneycap", "enable").setValue(loadMoneyCap);
                 config.getNode("features", "moneycap", "amount").setValue(10000000);
+                config.getNode("save", "interval").setValue(saveInterval);
+                config.getNode("save", "threshold").setValue(saveThreshold);
+                config.getNode("save", "journal-sync").setValue(journalSync);
+                config.getNode("save", "generations").setValue(saveGenerations);
+                config.getNode("storage", "type").setValue(storageType);
+                config.getNode("storage", "url").setValue(storageUrl);
+                config.getNode("storage", "idle-timeout").setValue(accountIdleTimeout);
+                config.getNode("balancetop", "refresh-interval").setValue(balanceTopRefreshInterval);
+                config.getNode("balancetop", "refresh-changes").setValue(balanceTopRefreshChanges);
                 config.getNode("startbalance").setValue(100);
                 config.getNode("currency-singular").setValue("Dollar");
                 config.getNode("currency-plural").setValue("Dollars");
@@ -228,17 +306,29 @@ public class TotalEconomy {
                 .executor(new BalanceCommand(this))
                 .build();
 
+        BalanceTopCommand balanceTopExecutor = new BalanceTopCommand(this);
+        balanceTopCache = balanceTopExecutor.getBalanceTopCache();
+
+        CommandSpec balanceRankCommand = CommandSpec.builder()
+                .description(Text.of("Display the balance rank of a player"))
+                .permission("totaleconomy.command.balancetop")
+                .executor(new BalanceRankCommand(this))
+                .arguments(GenericArguments.optional(new CachedUserElement(this, Text.of("player"))))
+                .build();
+
         CommandSpec balanceTopCommand = CommandSpec.builder()
                 .description(Text.of("Display top balances"))
                 .permission("totaleconomy.command.balancetop")
-                .executor(new BalanceTopCommand(this))
+                .executor(balanceTopExecutor)
+                .arguments(GenericArguments.optional(GenericArguments.integer(Text.of("count"))))
+                .child(balanceRankCommand, "rank")
                 .build();
 
         CommandSpec viewBalanceCommand = CommandSpec.builder()
                 .description(Text.of("View the balance of another player"))
                 .permission("totaleconomy.command.viewbalance")
                 .executor(new ViewBalanceCommand(this))
-                .arguments(GenericArguments.user(Text.of("player")))
+                .arguments(new CachedUserElement(this, Text.of("player")))
                 .build();
 
         CommandSpec setBalanceCommand = CommandSpec.builder()
@@ -249,6 +339,17 @@ public class TotalEconomy {
                         GenericArguments.string(Text.of("amount")))
                 .build();
 
+        CommandSpec statsCommand = CommandSpec.builder()
+                .description(Text.of("Display economy statistics"))
+                .permission("totaleconomy.command.stats")
+                .executor(new StatsCommand(this))
+                .build();
+
+        CommandSpec totalEconomyCommand = CommandSpec.builder()
+                .description(Text.of("Total Economy administration"))
+                .child(statsCommand, "stats")
+                .build();
+
         //Only enables job commands if the value for jobs in config is set to true
         if (loadJobs == true) {
             CommandSpec jobSetCmd = CommandSpec.builder()
@@ -259,9 +360,10 @@ public class TotalEconomy {
                     .build();
 
             CommandSpec jobNotifyToggle = CommandSpec.builder()
-                    .description(Text.of("Toggle job notifications on/off"))
+                    .description(Text.of("Set how job notifications are shown (off, chat, actionbar)"))
                     .permission("totaleconomy.command.jobtoggle")
                     .executor(new JobToggleCommand(this))
+                    .arguments(GenericArguments.optional(GenericArguments.enumValue(Text.of("mode"), NotificationMode.class)))
                     .build();
 
             CommandSpec jobInfoCmd = CommandSpec.builder()
@@ -270,6 +372,14 @@ public class TotalEconomy {
                     .executor(new JobInfoCommand(this))
                     .build();
 
+            CommandSpec jobTopCmd = CommandSpec.builder()
+                    .description(Text.of("Display the players with the highest levels in a job"))
+                    .permission("totaleconomy.command.jobtop")
+                    .executor(new JobTopCommand(this))
+                    .arguments(GenericArguments.string(Text.of("jobName")),
+                            GenericArguments.optional(GenericArguments.integer(Text.of("count"))))
+                    .build();
+
             CommandSpec jobCommand = CommandSpec.builder()
                     .description(Text.of("Display list of jobs."))
                     .permission("totaleconomy.command.job")
@@ -277,6 +387,7 @@ public class TotalEconomy {
                     .child(jobSetCmd, "set", "s")
                     .child(jobNotifyToggle, "toggle", "t")
                     .child(jobInfoCmd, "info", "i")
+                    .child(jobTopCmd, "top")
                     .build();
 
 
@@ -289,6 +400,7 @@ public class TotalEconomy {
         game.getCommandManager().register(this, viewBalanceCommand, "viewbalance", "vbal");
         game.getCommandManager().register(this, setBalanceCommand, "setbalance", "setbal");
         game.getCommandManager().register(this, balanceTopCommand, "balancetop", "baltop");
+        game.getCommandManager().register(this, totalEconomyCommand, "totaleconomy", "te");
     }
 
     /**
@@ -353,7 +465,33 @@ public class TotalEconomy {
         return moneyCap.setScale(2, BigDecimal.ROUND_DOWN);
     }
 
-    public boolean hasJobNotifications() { return jobNotifications; }
+    public long getMoneyCapMinorUnits() {
+        return moneyCapMinorUnits;
+    }
+
+    public NotificationMode getDefaultNotificationMode() { return defaultNotificationMode; }
+
+    public int getJobNotificationInterval() { return jobNotificationInterval; }
+
+    public int getSaveInterval() { return saveInterval; }
+
+    public int getSaveThreshold() { return saveThreshold; }
+
+    public boolean isJournalSync() { return journalSync; }
+
+    public int getSaveGenerations() { return saveGenerations; }
+
+    public String getStorageType() { return storageType; }
+
+    public String getStorageUrl() { return storageUrl; }
+
+    public int getAccountIdleTimeout() { return accountIdleTimeout; }
+
+    public int getBalanceTopRefreshInterval() { return balanceTopRefreshInterval; }
+
+    public int getJobRewardInterval() { return jobRewardInterval; }
+
+    public int getBalanceTopRefreshChanges() { return balanceTopRefreshChanges; }
 
     public Optional<UserStorageService> getUserStorageService() {
         return userStorageService;
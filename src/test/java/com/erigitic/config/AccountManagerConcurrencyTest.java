@@ -0,0 +1,298 @@
+/*
+ * This file is part of Total Economy, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Eric Grandt <https://www.ericgrandt.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.erigitic.config;
+
+import com.erigitic.main.TotalEconomy;
+import ninja.leaping.configurate.ConfigurationNode;
+import ninja.leaping.configurate.SimpleConfigurationNode;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.spongepowered.api.Game;
+import org.spongepowered.api.service.economy.Currency;
+import org.spongepowered.api.service.economy.account.Account;
+import org.spongepowered.api.service.economy.transaction.ResultType;
+
+import java.io.File;
+import java.lang.reflect.Array;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Stress test for the per-record locking. Deposits and transfers between a small set of player and virtual accounts
+ * run from many threads at once through TEAccount and TEVirtualAccount, so most changes contend for the same records
+ * while they are journaled and moved on the leaderboard. If a change is lost the balances won't add up, either in
+ * memory or when the journal is replayed.
+ */
+public class AccountManagerConcurrencyTest {
+    private static final int THREADS = 16;
+    private static final int OPERATIONS_PER_THREAD = 10000;
+    private static final int PLAYER_ACCOUNTS = 6;
+    private static final int VIRTUAL_ACCOUNTS = 2;
+    private static final BigDecimal STARTING_BALANCE = new BigDecimal("1000");
+
+    @Test
+    public void concurrentDepositsAndTransfersConserveBalances() throws Exception {
+        File configDir = Files.createTempDirectory("totaleconomy").toFile();
+
+        try {
+            TestEconomy totalEconomy = new TestEconomy(configDir);
+            InMemoryAccountStorage storage = new InMemoryAccountStorage();
+            AccountManager accountManager = new AccountManager(totalEconomy, storage);
+            Currency currency = accountManager.getDefaultCurrency();
+            List<Account> accounts = new ArrayList<>();
+
+            for (int i = 0; i < PLAYER_ACCOUNTS; i++) {
+                accounts.add(accountManager.getOrCreateAccount(UUID.randomUUID()).get());
+            }
+
+            for (int i = 0; i < VIRTUAL_ACCOUNTS; i++) {
+                Account account = accountManager.getOrCreateAccount("bank-" + i).get();
+                account.deposit(currency, STARTING_BALANCE, null);
+
+                accounts.add(account);
+            }
+
+            AtomicLong deposited = new AtomicLong();
+            CountDownLatch startLatch = new CountDownLatch(1);
+            ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+            List<Future<?>> futures = new ArrayList<>();
+
+            for (int t = 0; t < THREADS; t++) {
+                long seed = t;
+
+                futures.add(executor.submit(() -> {
+                    Random random = new Random(seed);
+
+                    startLatch.await();
+
+                    for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                        Account from = accounts.get(random.nextInt(accounts.size()));
+                        Account to = accounts.get(random.nextInt(accounts.size()));
+                        long minorUnits = 1 + random.nextInt(500);
+                        BigDecimal amount = AccountRecord.fromMinorUnits(minorUnits);
+
+                        if (random.nextInt(4) == 0) {
+                            assertEquals(ResultType.SUCCESS, to.deposit(currency, amount, null).getResult());
+                            deposited.addAndGet(minorUnits);
+                        } else {
+                            ResultType result = from.transfer(to, currency, amount, null).getResult();
+                            assertTrue(result == ResultType.SUCCESS || result == ResultType.ACCOUNT_NO_FUNDS);
+                        }
+                    }
+
+                    return null;
+                }));
+            }
+
+            startLatch.countDown();
+            executor.shutdown();
+            assertTrue("Timed out, the record locks may have deadlocked", executor.awaitTermination(2, TimeUnit.MINUTES));
+
+            for (Future<?> future : futures) {
+                future.get();
+            }
+
+            long expectedTotal = accounts.size() * AccountRecord.toMinorUnits(STARTING_BALANCE) + deposited.get();
+            long total = 0;
+
+            for (Account account : accounts) {
+                long balance = AccountRecord.toMinorUnits(account.getBalance(currency));
+                assertTrue(balance >= 0);
+
+                total += balance;
+            }
+
+            assertEquals(expectedTotal, total);
+
+            ConfigurationNode replayedConfig = SimpleConfigurationNode.root();
+            new TransactionJournal(configDir, totalEconomy.getLogger(), false).replay(replayedConfig);
+
+            long replayedTotal = 0;
+
+            for (Account account : accounts) {
+                String balance = replayedConfig.getNode(account.getIdentifier(), accountManager.getDefaultCurrencyName() + "-balance").getString();
+
+                assertEquals(account.getBalance(currency), new BigDecimal(balance));
+
+                replayedTotal += AccountRecord.toMinorUnits(new BigDecimal(balance));
+            }
+
+            assertEquals(expectedTotal, replayedTotal);
+
+            accountManager.saveAccountConfig();
+
+            for (Account account : accounts) {
+                Optional<ConfigurationNode> storedAccount = storage.loadAccount(account.getIdentifier());
+                assertTrue(storedAccount.isPresent());
+
+                String balance = storedAccount.get().getNode(accountManager.getDefaultCurrencyName() + "-balance").getString();
+                assertEquals(account.getBalance(currency), new BigDecimal(balance));
+            }
+        } finally {
+            try (Stream<Path> paths = Files.walk(configDir.toPath())) {
+                paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+            }
+        }
+    }
+
+    /**
+     * Create an implementation of an interface that does nothing. Methods return false, zero, an empty Optional or
+     * another fake if they return an interface, so builders and services can be chained without a running server.
+     *
+     * @param type the interface
+     * @return T the fake
+     */
+    private static <T> T fake(Class<T> type) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type}, (proxy, method, args) -> {
+            Class<?> returnType = method.getReturnType();
+
+            if (method.getName().equals("equals")) {
+                return proxy == args[0];
+            } else if (method.getName().equals("hashCode")) {
+                return System.identityHashCode(proxy);
+            } else if (method.getName().equals("toString")) {
+                return type.getSimpleName();
+            } else if (method.getName().equals("getName") && returnType == String.class) {
+                return type.getSimpleName();
+            } else if (returnType == Optional.class) {
+                return Optional.empty();
+            } else if (returnType.isPrimitive() && returnType != void.class) {
+                // A new array is filled with the default value of its type
+                return Array.get(Array.newInstance(returnType, 1), 0);
+            } else if (returnType.isInterface()) {
+                return fake(returnType);
+            }
+
+            return null;
+        }));
+    }
+
+    /**
+     * The plugin with the settings the account manager needs and no server behind it
+     */
+    private static class TestEconomy extends TotalEconomy {
+        private final File configDir;
+        private final Logger logger = fake(Logger.class);
+        private final Game game = fake(Game.class);
+        private final Currency currency = fake(Currency.class);
+
+        TestEconomy(File configDir) {
+            this.configDir = configDir;
+        }
+
+        @Override
+        public Logger getLogger() {
+            return logger;
+        }
+
+        @Override
+        public File getConfigDir() {
+            return configDir;
+        }
+
+        @Override
+        public Game getGame() {
+            return game;
+        }
+
+        @Override
+        public Currency getDefaultCurrency() {
+            return currency;
+        }
+
+        @Override
+        public BigDecimal getStartingBalance() {
+            return STARTING_BALANCE;
+        }
+    }
+
+    /**
+     * Keeps the saved accounts in memory
+     */
+    private static class InMemoryAccountStorage implements AccountStorage {
+        private final ConfigurationNode storedConfig = SimpleConfigurationNode.root();
+
+        @Override
+        public synchronized Set<String> open() {
+            return HoconAccountStorage.getIdentifiers(storedConfig);
+        }
+
+        @Override
+        public synchronized Optional<ConfigurationNode> loadAccount(String identifier) {
+            return HoconAccountStorage.copyAccount(storedConfig, identifier);
+        }
+
+        @Override
+        public synchronized ConfigurationNode load() {
+            ConfigurationNode accountConfig = SimpleConfigurationNode.root();
+            accountConfig.mergeValuesFrom(storedConfig);
+
+            return accountConfig;
+        }
+
+        @Override
+        public synchronized void save(ConfigurationNode snapshot, Collection<String> identifiers) {
+            HoconAccountStorage.mergeSnapshot(storedConfig, snapshot, identifiers);
+        }
+
+        @Override
+        public synchronized Map<String, Long> getBalances(String currencyName) {
+            return HoconAccountStorage.findBalances(currencyName, storedConfig);
+        }
+
+        @Override
+        public synchronized Map<String, Map<String, AccountRecord.JobStats>> getJobStats() {
+            return HoconAccountStorage.findJobStats(storedConfig);
+        }
+
+        @Override
+        public void close() {
+
+        }
+    }
+}